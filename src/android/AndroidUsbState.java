@@ -0,0 +1,50 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.cordova.usb.tethered.discovery;
+
+import org.apache.cordova.CordovaInterface;
+
+import android.content.Intent;
+import android.content.IntentFilter;
+
+/**
+ * UsbState adapter reading the sticky USB_STATE broadcast
+ */
+class AndroidUsbState implements UsbState {
+
+    /**
+     * Cordova interface to device
+     */
+    private final CordovaInterface cordova;
+
+    /**
+     * Constructor
+     */
+    public AndroidUsbState(final CordovaInterface cordova) {
+        this.cordova = cordova;
+    }
+
+    @Override
+    public boolean isUsbAttached() {
+        Intent intent = this.cordova.getActivity().registerReceiver(null, new IntentFilter(PluginUtils.USB_STATE));
+        return intent.getExtras().getBoolean(PluginUtils.USB_CABLE_CONNECTED);
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.cordova.usb.tethered.discovery;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+
+/**
+ * Feeds a PacketCapture file back to the receive stage, either as fast as
+ * possible or respecting the original timing between datagrams. Packet
+ * timestamps are rebased on the replay of their session, the time elapsed
+ * since the search was sent is the recorded one in both modes.
+ */
+class CaptureReplay implements PacketSource {
+
+    private final DataInputStream in;
+
+    private final boolean realtime;
+
+    /**
+     * Monotonic time the replay started
+     */
+    private final long start;
+
+    /**
+     * Monotonic time the current session replay started, stands for the
+     * search sent time
+     */
+    private long base;
+
+    /**
+     * Recorded sent time of the session being replayed
+     */
+    private long sessionStart = -1;
+
+    private boolean open = true;
+
+    /**
+     * Constructor
+     *
+     * @param file
+     *            file written by PacketCapture
+     * @param realtime
+     *            true to wait the original time between datagrams
+     * @throws IOException
+     *             file can't be opened or isn't a capture
+     */
+    public CaptureReplay(final File file, final boolean realtime) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        this.realtime = realtime;
+        if (this.in.readInt() != PacketCapture.MAGIC || this.in.readShort() != PacketCapture.VERSION) {
+            close();
+            throw new IOException("Not a SSDP capture: " + file);
+        }
+        this.start = System.nanoTime();
+        this.base = this.start;
+    }
+
+    /**
+     * @return long monotonic time the replay started
+     */
+    public long getStart() {
+        return this.start;
+    }
+
+    @Override
+    public SSDPPacket receive(final DatagramPacket pkg, final SSDPFilter filter) throws IOException {
+        if (!this.open) {
+            return null;
+        }
+        try {
+            byte type = this.in.readByte();
+            if (type == PacketCapture.SESSION) {
+                this.sessionStart = this.in.readLong();
+                if (this.realtime) {
+                    // sessions are replayed one after the other
+                    this.base = System.nanoTime();
+                }
+                return null;
+            } else if (type != PacketCapture.PACKET) {
+                throw new IOException("Corrupted capture");
+            }
+            long timestamp = this.in.readLong();
+            byte[] addr = new byte[this.in.readUnsignedByte()];
+            this.in.readFully(addr);
+            int length = this.in.readUnsignedShort();
+            byte[] data = new byte[length];
+            this.in.readFully(data);
+
+            long at = this.base + (timestamp - (this.sessionStart < 0 ? timestamp : this.sessionStart));
+            if (this.realtime) {
+                long wait = at - System.nanoTime();
+                if (wait > 0) {
+                    Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+                }
+            }
+            InetAddress address = InetAddress.getByAddress(addr);
+            if (filter != null && !filter.accepts(data, length, address)) {
+                return null;
+            }
+            return new SSDPPacket(data, length, address, at);
+        } catch (EOFException e) {
+            close();
+            return null;
+        } catch (InterruptedException e) {
+            close();
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return this.open;
+    }
+
+    public void close() {
+        this.open = false;
+        try {
+            this.in.close();
+        } catch (IOException e) {
+            // nothing left to do
+        }
+    }
+}
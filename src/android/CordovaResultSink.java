@@ -0,0 +1,76 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.cordova.usb.tethered.discovery;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * ResultSink adapter to a Cordova CallbackContext, results keep the callback
+ * alive until close
+ */
+class CordovaResultSink implements ResultSink {
+
+    /**
+     * Logging TAG
+     */
+    private static final String TAG = "CordovaResultSink";
+
+    private final CallbackContext callbackContext;
+
+    /**
+     * Constructor
+     *
+     * @param callbackContext
+     *            The callback id used when calling back into JavaScript.
+     */
+    public CordovaResultSink(final CallbackContext callbackContext) {
+        this.callbackContext = callbackContext;
+    }
+
+    @Override
+    public void send(final boolean status, final JSONObject response) {
+        PluginResult result;
+        if (status) {
+            result = new PluginResult(PluginResult.Status.OK, response);
+        } else {
+            result = new PluginResult(PluginResult.Status.ERROR, response);
+        }
+        result.setKeepCallback(true);
+        this.callbackContext.sendPluginResult(result);
+    }
+
+    @Override
+    public void close(final String message) {
+        JSONObject response = new JSONObject();
+        try {
+            response.put("status", true);
+            response.put("message", message);
+        } catch (JSONException e) {
+            Log.v(TAG, "Error on plugin serialization: " + e.getMessage());
+        }
+        PluginResult result = new PluginResult(PluginResult.Status.OK, response);
+        result.setKeepCallback(false);
+        this.callbackContext.sendPluginResult(result);
+    }
+}
@@ -0,0 +1,472 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.cordova.usb.tethered.discovery;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+
+/**
+ * Keeps checking the devices on the DeviceRegistry and reports only up/down
+ * transitions. A single timer thread schedules the rounds for every device,
+ * the rounds and their probes run on a worker pool. Each device has its own
+ * probe interval which doubles while its state is stable and goes back to
+ * the minimum on any change. New devices get a round right away, devices
+ * down for long are forgotten.
+ */
+class DeviceMonitor {
+
+    /**
+     * Logging TAG
+     */
+    private static final String TAG = "DeviceMonitor";
+
+    /**
+     * Probe method: unicast M-SEARCH to the device IP
+     */
+    final static String METHOD_SSDP = "ssdp";
+
+    /**
+     * Probe method: HTTP HEAD on the device LOCATION
+     */
+    final static String METHOD_HTTP = "http";
+
+    /**
+     * Consecutive failed probes before a device is reported down
+     */
+    final static int FAILURE_THRESHOLD = 2;
+
+    /**
+     * A device down for this many maxInterval periods is forgotten, also by
+     * the DeviceRegistry
+     */
+    final static int EXPIRY_INTERVALS = 4;
+
+    /**
+     * Receives the state transitions, called from the monitor thread
+     */
+    interface Listener {
+        /**
+         * @param device
+         *            jsonified SSDP response of the device
+         * @param alive
+         *            new device state
+         */
+        void onTransition(JSONObject device, boolean alive);
+    }
+
+    /**
+     * Monitoring state of one device
+     */
+    private static class Target {
+        JSONObject device;
+        boolean alive = true;
+        int failures = 0;
+        long interval;
+        long nextProbe;
+        /**
+         * Wall clock time (MSEC) the device went down
+         */
+        long downSince;
+    }
+
+    private final DeviceRegistry registry;
+
+    private final Listener listener;
+
+    private final String method;
+
+    private final String st;
+
+    private final long minInterval;
+
+    private final long maxInterval;
+
+    private final int timeout;
+
+    private final Map<String, Target> targets = new HashMap<>();
+
+    private ScheduledExecutorService timer = null;
+
+    /**
+     * Runs the rounds and the concurrent HTTP probes, the timer only
+     * schedules
+     */
+    private ExecutorService workers = null;
+
+    /**
+     * Set by stop, no transition is reported afterwards
+     */
+    private volatile boolean stopped = false;
+
+    /**
+     * Next scheduled round, null while a round is running
+     */
+    private ScheduledFuture<?> pending = null;
+
+    /**
+     * A new device showed up while a round was running
+     */
+    private boolean wake = false;
+
+    /**
+     * Constructor
+     *
+     * @param registry
+     *            devices to monitor, new devices are picked up on each round
+     * @param listener
+     *            receives the up/down transitions
+     * @param method
+     *            METHOD_SSDP or METHOD_HTTP
+     * @param st
+     *            search target for ssdp probes
+     * @param minInterval
+     *            MSEC between probes after a change
+     * @param maxInterval
+     *            MSEC between probes of a long stable device
+     * @param timeout
+     *            MSEC to wait for a probe answer
+     */
+    public DeviceMonitor(final DeviceRegistry registry, final Listener listener, final String method, final String st,
+            final long minInterval, final long maxInterval, final int timeout) {
+        this.registry = registry;
+        this.listener = listener;
+        this.method = METHOD_HTTP.equalsIgnoreCase(method) ? METHOD_HTTP : METHOD_SSDP;
+        this.st = st;
+        this.minInterval = Math.max(minInterval, timeout);
+        this.maxInterval = Math.max(maxInterval, this.minInterval);
+        this.timeout = timeout;
+    }
+
+    public synchronized void start() {
+        if (this.timer == null) {
+            this.stopped = false;
+            this.timer = Executors.newSingleThreadScheduledExecutor();
+            this.workers = Executors.newCachedThreadPool();
+            this.registry.setListener(new DeviceRegistry.Listener() {
+
+                @Override
+                public void onNewDevice(final String usn) {
+                    wakeUp();
+                }
+            });
+            schedule(0);
+        }
+    }
+
+    /**
+     * Stops the monitor, once it returns no transition is reported anymore
+     * even if a round is still running
+     */
+    public synchronized void stop() {
+        this.stopped = true;
+        if (this.timer != null) {
+            this.registry.setListener(null);
+            this.timer.shutdownNow();
+            this.workers.shutdownNow();
+            this.timer = null;
+            this.workers = null;
+        }
+    }
+
+    public synchronized boolean isRunning() {
+        return this.timer != null;
+    }
+
+    private synchronized void schedule(final long delay) {
+        if (this.timer == null) {
+            return;
+        }
+        final ExecutorService workers = this.workers;
+        final Runnable task = new Runnable() {
+
+            @Override
+            public void run() {
+                long next = DeviceMonitor.this.minInterval;
+                try {
+                    next = round();
+                } catch (RuntimeException e) {
+                    Log.v(TAG, "Error on monitor round: " + e.getMessage());
+                }
+                synchronized (DeviceMonitor.this) {
+                    if (DeviceMonitor.this.wake) {
+                        DeviceMonitor.this.wake = false;
+                        next = 0;
+                    }
+                    schedule(next);
+                }
+            }
+        };
+        this.pending = this.timer.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                synchronized (DeviceMonitor.this) {
+                    DeviceMonitor.this.pending = null;
+                }
+                workers.execute(task);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs a round right away for a new device, or right after the running
+     * one
+     */
+    private synchronized void wakeUp() {
+        if (this.timer == null) {
+            return;
+        }
+        if (this.pending == null) {
+            this.wake = true;
+        } else if (this.pending.cancel(false)) {
+            schedule(0);
+        }
+    }
+
+    /**
+     * Probes every device which is due, devices sharing the same probe target
+     * (IP or LOCATION) are probed once
+     *
+     * @return long MSEC until the next device is due
+     */
+    private long round() {
+        long now = System.currentTimeMillis();
+        Set<String> known = new HashSet<>();
+        for (JSONObject device : this.registry.getDevices()) {
+            String usn = device.optString("usn");
+            known.add(usn);
+            Target target = this.targets.get(usn);
+            if (target == null) {
+                target = new Target();
+                target.interval = this.minInterval;
+                target.nextProbe = now;
+                this.targets.put(usn, target);
+            }
+            target.device = device;
+        }
+        for (Iterator<Map.Entry<String, Target>> it = this.targets.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, Target> item = it.next();
+            Target target = item.getValue();
+            if (!known.contains(item.getKey())) {
+                it.remove();
+            } else if (!target.alive && now - target.downSince >= EXPIRY_INTERVALS * this.maxInterval
+                    && this.registry.remove(item.getKey(), target.device)) {
+                Log.v(TAG, probeKey(target.device) + " expired");
+                it.remove();
+            }
+        }
+
+        Set<String> due = new HashSet<>();
+        for (Target target : this.targets.values()) {
+            if (target.nextProbe <= now) {
+                due.add(probeKey(target.device));
+            }
+        }
+        Set<String> answered = METHOD_HTTP.equals(this.method) ? probeHttp(due) : probeSsdp(due);
+        if (this.stopped) {
+            return this.maxInterval;
+        }
+
+        now = System.currentTimeMillis();
+        long next = this.maxInterval;
+        for (Target target : this.targets.values()) {
+            if (due.contains(probeKey(target.device)) && target.nextProbe <= now) {
+                update(target, answered.contains(probeKey(target.device)), now);
+            }
+            next = Math.min(next, Math.max(target.nextProbe - now, 0));
+        }
+        return next;
+    }
+
+    private void update(final Target target, final boolean ok, final long now) {
+        boolean alive = target.alive;
+        if (ok) {
+            target.failures = 0;
+            alive = true;
+        } else if (++target.failures >= FAILURE_THRESHOLD) {
+            alive = false;
+        }
+        if (alive != target.alive || (alive && !ok)) {
+            // something is changing, look closely
+            target.interval = this.minInterval;
+        } else {
+            target.interval = Math.min(target.interval * 2, this.maxInterval);
+        }
+        target.nextProbe = now + target.interval;
+        if (alive != target.alive) {
+            target.alive = alive;
+            target.downSince = now;
+            Log.v(TAG, probeKey(target.device) + (alive ? " up" : " down"));
+            notifyTransition(target.device, alive);
+        }
+    }
+
+    /**
+     * Reports a transition unless stopped, holding the lock so stop waits
+     * for a notification in progress and the listener is never called after
+     * stop returns
+     */
+    private synchronized void notifyTransition(final JSONObject device, final boolean alive) {
+        if (!this.stopped) {
+            this.listener.onTransition(device, alive);
+        }
+    }
+
+    private String probeKey(final JSONObject device) {
+        return METHOD_HTTP.equals(this.method) ? device.optString("location") : device.optString("ipAddress");
+    }
+
+    /**
+     * Sends one unicast M-SEARCH per address and waits for all the answers on
+     * a single socket
+     *
+     * @return Set addresses which answered
+     */
+    private Set<String> probeSsdp(final Set<String> addresses) {
+        Set<String> answered = new HashSet<>();
+        if (addresses.isEmpty()) {
+            return answered;
+        }
+        DatagramSocket socket = null;
+        try {
+            socket = new DatagramSocket();
+            for (String address : addresses) {
+                byte[] data = PluginUtils.buildUnicastMSearch(this.st, address).getBytes();
+                socket.send(new DatagramPacket(data, data.length, new InetSocketAddress(InetAddress.getByName(address), PluginUtils.SSDP_PORT)));
+            }
+            byte[] buff = new byte[1024];
+            DatagramPacket pkg = new DatagramPacket(buff, buff.length);
+            long deadline = System.currentTimeMillis() + this.timeout;
+            long remaining;
+            while (answered.size() < addresses.size() && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                socket.setSoTimeout((int) remaining);
+                pkg.setLength(buff.length);
+                try {
+                    socket.receive(pkg);
+                } catch (SocketTimeoutException e) {
+                    break;
+                }
+                String address = pkg.getAddress().getHostAddress();
+                if (addresses.contains(address)) {
+                    answered.add(address);
+                }
+            }
+        } catch (IOException e) {
+            Log.v(TAG, "Probe error: " + e.getMessage());
+        } finally {
+            if (socket != null) {
+                socket.close();
+            }
+        }
+        return answered;
+    }
+
+    /**
+     * HTTP HEAD on each LOCATION, all at once on the worker pool, any HTTP
+     * answer means the device is alive
+     *
+     * @return Set locations which answered
+     */
+    private Set<String> probeHttp(final Set<String> locations) {
+        Set<String> answered = new HashSet<>();
+        ExecutorService workers;
+        synchronized (this) {
+            workers = this.workers;
+        }
+        if (locations.isEmpty() || workers == null) {
+            return answered;
+        }
+        final List<String> keys = new ArrayList<>(locations);
+        List<Callable<Boolean>> probes = new ArrayList<>();
+        for (final String location : keys) {
+            probes.add(new Callable<Boolean>() {
+
+                @Override
+                public Boolean call() {
+                    return probeHttp(location);
+                }
+            });
+        }
+        try {
+            List<Future<Boolean>> results = workers.invokeAll(probes);
+            for (int i = 0; i < keys.size(); i++) {
+                if (results.get(i).get()) {
+                    answered.add(keys.get(i));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Log.v(TAG, "Probe error: " + e.getMessage());
+        } catch (RejectedExecutionException e) {
+            // stopped while probing
+        }
+        return answered;
+    }
+
+    /**
+     * HTTP HEAD on one LOCATION
+     *
+     * @return boolean true if the location gave any HTTP answer
+     */
+    private boolean probeHttp(final String location) {
+        HttpURLConnection http = null;
+        try {
+            http = (HttpURLConnection) new URL(location).openConnection();
+            http.setRequestMethod("HEAD");
+            http.setConnectTimeout(this.timeout);
+            http.setReadTimeout(this.timeout);
+            http.setUseCaches(false);
+            return http.getResponseCode() > 0;
+        } catch (IOException e) {
+            Log.v(TAG, "Probe error: " + location + " " + e.getMessage());
+            return false;
+        } finally {
+            if (http != null) {
+                http.disconnect();
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.cordova.usb.tethered.discovery;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Devices/services known by the plugin, keyed by USN, as last seen by a
+ * discovery or a revalidation. BOOTID/CONFIGID are tracked so a rebooted or
+ * reconfigured device can be told from an unchanged one.
+ */
+class DeviceRegistry {
+
+    /**
+     * Logging TAG
+     */
+    private static final String TAG = "DeviceRegistry";
+
+    /**
+     * What a response means for the known device
+     */
+    enum Change {
+        /**
+         * USN never seen before
+         */
+        NEW,
+        /**
+         * Rebooted, reconfigured or moved, see SSDPParser.isChanged
+         */
+        CHANGED,
+        /**
+         * Same device instance as last time
+         */
+        UNCHANGED
+    }
+
+    /**
+     * Told about devices seen for the first time
+     */
+    interface Listener {
+        /**
+         * Called after the registry lock is released
+         *
+         * @param usn
+         *            USN of the new device
+         */
+        void onNewDevice(String usn);
+    }
+
+    /**
+     * Last response of a device, jsonified lazily
+     */
+    private static class Entry {
+        SSDPParser device;
+        JSONObject json;
+    }
+
+    private final Map<String, Entry> devices = new LinkedHashMap<>();
+
+    private volatile Listener listener = null;
+
+    /**
+     * @param listener
+     *            told about new devices, null for none
+     */
+    public void setListener(final Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Adds or replaces a device
+     *
+     * @param device
+     *            parsed SSDP response
+     * @return Change compared to the previous response of the same USN
+     */
+    public Change update(final SSDPParser device) {
+        Change change = Change.NEW;
+        synchronized (this) {
+            Entry entry = this.devices.get(device.getUsn());
+            if (entry == null) {
+                entry = new Entry();
+                this.devices.put(device.getUsn(), entry);
+            } else {
+                change = entry.device.isChanged(device) ? Change.CHANGED : Change.UNCHANGED;
+            }
+            entry.device = device;
+            entry.json = null;
+        }
+        Listener listener = this.listener;
+        if (change == Change.NEW && listener != null) {
+            listener.onNewDevice(device.getUsn());
+        }
+        return change;
+    }
+
+    /**
+     * Forgets a device, unless it answered again since the snapshot
+     *
+     * @param usn
+     *            USN of the device
+     * @param device
+     *            snapshot of the device from getDevices
+     * @return boolean true if the device was removed
+     */
+    public synchronized boolean remove(final String usn, final JSONObject device) {
+        Entry entry = this.devices.get(usn);
+        if (entry == null || entry.json != device) {
+            return false;
+        }
+        this.devices.remove(usn);
+        return true;
+    }
+
+    /**
+     * @return List of distinct IP addresses of the known devices
+     */
+    public synchronized List<String> getAddresses() {
+        Set<String> addresses = new LinkedHashSet<>();
+        for (Entry entry : this.devices.values()) {
+            addresses.add(entry.device.getIpAddress());
+        }
+        return new ArrayList<>(addresses);
+    }
+
+    /**
+     * @return List snapshot of the known devices
+     */
+    public synchronized List<JSONObject> getDevices() {
+        List<JSONObject> devices = new ArrayList<>();
+        for (Entry entry : this.devices.values()) {
+            if (entry.json == null) {
+                try {
+                    entry.json = entry.device.toJSON();
+                } catch (JSONException e) {
+                    Log.v(TAG, "Error on plugin serialization: " + e.getMessage());
+                    continue;
+                }
+            }
+            devices.add(entry.json);
+        }
+        return devices;
+    }
+
+    public synchronized int size() {
+        return this.devices.size();
+    }
+}
@@ -0,0 +1,722 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.cordova.usb.tethered.discovery;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Platform neutral discovery engine: socket transport, M-SEARCH, parsing and
+ * result assembly. It only talks to the platform through UsbState, Logger
+ * (see Log) and ResultSink, so it runs and can be profiled on a plain JVM.
+ */
+class DiscoveryEngine {
+
+    /**
+     * Logging TAG
+     */
+    private static final String TAG = "DiscoveryEngine";
+
+    /**
+     * Platform USB cable state
+     */
+    private final UsbState usbState;
+
+    /**
+     * SSDP USB Multicast connector for the USB and tethering state checks,
+     * searches use transports of their own
+     */
+    private final UsbMulticast connector;
+
+    /**
+     * Transports of the searches and revalidations in flight
+     */
+    private final Set<UsbMulticast> transports = new HashSet<>();
+
+    /**
+     * Runs the receive stage and the long running calls
+     */
+    private final Executor executor;
+
+    /**
+     * Where the timing histograms and captures are written
+     */
+    private final File dataDir;
+
+    /**
+     * Response timing learned across searches, for the adaptive window
+     */
+    private final SearchWindowEstimator estimator;
+
+    /**
+     * Capture file shared by every capturing search
+     */
+    private final PacketCapture capture;
+
+    /**
+     * Devices found so far, source of the addresses to revalidate
+     */
+    private final DeviceRegistry registry = new DeviceRegistry();
+
+    /**
+     * Devices seen on replays, kept apart from the live ones
+     */
+    private final DeviceRegistry replayRegistry = new DeviceRegistry();
+
+    /**
+     * Devices as last seen by each search, by search key, what onlyChanged
+     * compares against
+     */
+    private final Map<String, DeviceRegistry> baselines = new HashMap<>();
+
+    /**
+     * Same as baselines, for replays
+     */
+    private final Map<String, DeviceRegistry> replayBaselines = new HashMap<>();
+
+    /**
+     * Liveness monitor of the registered devices, if started
+     */
+    private DeviceMonitor monitor = null;
+
+    /**
+     * Keep-alive sink receiving the monitor transitions
+     */
+    private ResultSink monitorSink = null;
+
+    /**
+     * Identical concurrent discoveries share one search
+     */
+    private final SearchCoalescer coalescer = new SearchCoalescer();
+
+    /**
+     * Versioned device sets for delta results, by search key
+     */
+    private final Map<String, DiscoveryState> states = new HashMap<>();
+
+    /**
+     * Identifies this engine instance on generation tokens
+     */
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    /**
+     * Constructor
+     *
+     * @param usbState
+     *            platform USB cable state
+     * @param executor
+     *            runs the receive stage, must allow at least two concurrent
+     *            tasks per discovery
+     * @param dataDir
+     *            writable directory for timing histograms and captures
+     */
+    public DiscoveryEngine(final UsbState usbState, final Executor executor, final File dataDir) {
+        this.usbState = usbState;
+        this.connector = new UsbMulticast(usbState);
+        this.executor = executor;
+        this.dataDir = dataDir;
+        this.estimator = new SearchWindowEstimator(new File(dataDir, PluginUtils.TIMING_FILE));
+        this.capture = new PacketCapture(new File(dataDir, PluginUtils.CAPTURE_FILE));
+    }
+
+    /**
+     * @return UsbMulticast connector, for USB and tethering state checks
+     */
+    public UsbMulticast getConnector() {
+        return this.connector;
+    }
+
+    /**
+     * Stops the monitor and closes the sockets in use
+     */
+    public void shutdown() {
+        stopMonitor();
+        synchronized (this.transports) {
+            for (UsbMulticast transport : this.transports) {
+                transport.tearDown();
+            }
+            this.transports.clear();
+        }
+    }
+
+    /**
+     * Tears up a transport with its own socket, concurrent searches and
+     * revalidations never share a socket
+     *
+     * @param receiveBufferSize SO_RCVBUF in bytes, 0 keeps the system default
+     * @return UsbMulticast teared up transport, to be closed by closeTransport
+     * @throws IOException socket error
+     */
+    private UsbMulticast openTransport(final int receiveBufferSize) throws IOException {
+        UsbMulticast transport = new UsbMulticast(this.usbState);
+        transport.tearUp(receiveBufferSize);
+        synchronized (this.transports) {
+            this.transports.add(transport);
+        }
+        return transport;
+    }
+
+    /**
+     * Closes a transport from openTransport
+     *
+     * @param transport transport to close, null is ignored
+     */
+    private void closeTransport(final UsbMulticast transport) {
+        if (transport != null) {
+            synchronized (this.transports) {
+                this.transports.remove(transport);
+            }
+            // Errors while closing the socket is already handled by the
+            // connector itself
+            transport.tearDown();
+        }
+    }
+
+    /**
+     * Perform the discovery and builds the response to send to the sink
+     *
+     * Response latencies are always recorded, in adaptive mode they define
+     * the search window instead of mx + 2 seconds.
+     *
+     * Callers asking for an identical search (see DiscoveryOptions.getKey)
+     * while one is in flight don't send another M-SEARCH, they are attached
+     * to the running one and get its result.
+     *
+     * @param options discovery arguments (st, version, mx and pipeline tuning)
+     */
+    public void discovery(final DiscoveryOptions options, final ResultSink sink) {
+        ResultSink shared = this.coalescer.join(options.getKey(), sink);
+        if (shared == null) {
+            return;
+        }
+        try {
+            search(options, shared);
+        } catch (RuntimeException e) {
+            // release attached callers, no-op if the result was already sent
+            buildStatusMessage(false, e.getMessage(), shared);
+            throw e;
+        }
+    }
+
+    /**
+     * Runs one network search
+     *
+     * @param options discovery arguments (st, version, mx and pipeline tuning)
+     */
+    private void search(final DiscoveryOptions options, final ResultSink sink) {
+        UsbMulticast transport = null;
+        PacketCapture.Session session = null;
+        try {
+            transport = openTransport(options.getReceiveBufferSize());
+            String netIf = transport.getInterfaceName();
+            long window = -1;
+            if (options.isAdaptive()) {
+                window = this.estimator.getWindow(netIf, options.getMx(), options.getAdaptivePercentile(), options.getAdaptiveMargin());
+                Log.v(TAG, "Adaptive window: " + window);
+            }
+            if (window < 0) {
+                // mx (max wait time) + 2 seconds * MSEC
+                window = (options.getMx() + 2) * 1000;
+            }
+            transport.send(options.getSt(), options.getVersion(), options.getMx());
+            final long sentAt = System.nanoTime();
+            if (options.isCapture()) {
+                session = this.capture.startSession(sentAt);
+                transport.setCapture(session);
+            }
+            buildDiscoveryMessage(options, collect(transport, this.registry, getBaseline(this.baselines, options), options, System.currentTimeMillis() + window, sentAt, netIf), sink);
+        } catch (IOException e) {
+            // any error which happens while tearing up, sending or receiving will be
+            // handled by this exception.
+            buildStatusMessage(false, e.getMessage(), sink);
+        } finally {
+            closeTransport(transport);
+            if (session != null) {
+                this.capture.append(session);
+            }
+        }
+    }
+
+    /**
+     * Feeds a capture file through the discovery pipeline and builds the
+     * response exactly as a live discovery would
+     *
+     * @param file capture file, defaults to the one written by the capture option
+     * @param realtime true to respect the recorded timing, false to replay at full speed
+     * @param options pipeline options (filter, queue)
+     */
+    public void replay(final String file, final boolean realtime, final DiscoveryOptions options, final ResultSink sink) {
+        CaptureReplay replay = null;
+        try {
+            File capture = (file.length() > 0) ? new File(file) : new File(this.dataDir, PluginUtils.CAPTURE_FILE);
+            replay = new CaptureReplay(capture, realtime);
+            buildDiscoveryMessage(options, collect(replay, this.replayRegistry, getBaseline(this.replayBaselines, options), options, Long.MAX_VALUE, replay.getStart(), null), sink);
+        } catch (IOException e) {
+            buildStatusMessage(false, e.getMessage(), sink);
+        } finally {
+            if (replay != null) {
+                replay.close();
+            }
+        }
+    }
+
+    /**
+     * Responses gathered by collect
+     */
+    private static class Collected {
+        /**
+         * Jsonified responses, only the changed ones in onlyChanged mode,
+         * none in delta mode
+         */
+        final JSONArray devices = new JSONArray();
+        /**
+         * Parsed responses by USN, delta mode only
+         */
+        final Map<String, SSDPParser> seen = new LinkedHashMap<>();
+        /**
+         * Number of valid responses, changed or not
+         */
+        int responses = 0;
+    }
+
+    /**
+     * Runs the receive/parse pipeline until the source closes or the deadline
+     *
+     * The source is drained by a SSDPReceiver on its own thread while this
+     * thread parses and serializes, so a slow parse never makes the kernel
+     * drop responses from a burst. In onlyChanged mode responses of devices
+     * which did not change since they were last seen are dropped before
+     * being jsonified, changes are told against the previous search with the
+     * same search key only. In delta mode nothing is jsonified here, the search
+     * DiscoveryState only jsonifies added and changed devices.
+     *
+     * @param source live connector or a capture replay
+     * @param registry devices of the source, live or replayed
+     * @param baseline devices as last seen by this search, for onlyChanged
+     * @param options pipeline options (filter, queue, onlyChanged, delta)
+     * @param deadline wall clock time (MSEC) when the receiving stops
+     * @param sentAt monotonic time the search was sent
+     * @param netIf interface to record the response latencies for, null to not record them
+     * @return Collected parsed responses
+     * @throws IOException source error
+     */
+    private Collected collect(final PacketSource source, final DeviceRegistry registry, final DeviceRegistry baseline,
+            final DiscoveryOptions options, final long deadline, final long sentAt, final String netIf) throws IOException {
+        Collected collected = new Collected();
+        PacketQueue queue = new PacketQueue(options.getQueueCapacity(), options.getBackPressure());
+        SSDPReceiver receiver = new SSDPReceiver(source, queue, options.getFilter(), deadline);
+        long[] latencies = new long[16];
+        try {
+            this.executor.execute(receiver);
+            SSDPPacket packet;
+            while ((packet = queue.take()) != null) {
+                SSDPParser ss = parseMessage(packet.getPayload());
+                if (ss == null) {
+                    continue;
+                }
+                if (collected.responses == latencies.length) {
+                    latencies = Arrays.copyOf(latencies, collected.responses * 2);
+                }
+                latencies[collected.responses++] = (packet.getTimestamp() - sentAt) / 1000000;
+                registry.update(ss);
+                DeviceRegistry.Change change = baseline.update(ss);
+                if (options.isDelta()) {
+                    collected.seen.put(ss.getUsn(), ss);
+                    continue;
+                }
+                if (options.isOnlyChanged() && change == DeviceRegistry.Change.UNCHANGED) {
+                    continue;
+                }
+                JSONObject ssObj = jsonifyMessage(ss);
+                if (ssObj.length() > 0) {
+                    collected.devices.put(ssObj);
+                }
+            }
+        } finally {
+            receiver.stop();
+            queue.close();
+        }
+        if (receiver.getError() != null) {
+            throw receiver.getError();
+        }
+        if (netIf != null) {
+            this.estimator.record(netIf, latencies, collected.responses);
+        }
+        return collected;
+    }
+
+    /**
+     * Devices as last seen by the search, created on its first run
+     *
+     * @param baselines live or replay baselines
+     * @param options discovery arguments, for the search key
+     * @return DeviceRegistry baseline of the search key
+     */
+    private static DeviceRegistry getBaseline(final Map<String, DeviceRegistry> baselines, final DiscoveryOptions options) {
+        synchronized (baselines) {
+            DeviceRegistry baseline = baselines.get(options.getSearchKey());
+            if (baseline == null) {
+                baseline = new DeviceRegistry();
+                baselines.put(options.getSearchKey(), baseline);
+            }
+            return baseline;
+        }
+    }
+
+    /**
+     * Builds the discovery result message
+     *
+     * @param options discovery arguments, for the result mode
+     * @param collected responses of the search
+     */
+    private void buildDiscoveryMessage(final DiscoveryOptions options, final Collected collected, final ResultSink sink) {
+        if (options.isDelta()) {
+            buildDeltaMessage(options, collected, sink);
+        } else if (collected.devices.length() > 0) {
+            buildStatusMessage(true, collected.devices, sink);
+        } else if (collected.responses > 0) {
+            // onlyChanged mode, devices answered but none changed
+            buildStatusMessage(true, PluginUtils.NO_CHANGES, sink);
+        } else {
+            buildStatusMessage(false, PluginUtils.NO_RESULTS, sink);
+        }
+    }
+
+    /**
+     * Applies the search to its DiscoveryState and builds the delta message
+     * against the caller generation token:
+     * {status, generation, full, added, changed, removed, message}
+     *
+     * @param options discovery arguments, for the search key and token
+     * @param collected responses of the search
+     */
+    private void buildDeltaMessage(final DiscoveryOptions options, final Collected collected, final ResultSink sink) {
+        DiscoveryState state;
+        synchronized (this.states) {
+            state = this.states.get(options.getSearchKey());
+            if (state == null) {
+                state = new DiscoveryState(this.epoch);
+                this.states.put(options.getSearchKey(), state);
+            }
+        }
+        try {
+            state.update(collected.seen);
+            JSONObject response = state.delta(options.getGeneration());
+            boolean empty = !response.optBoolean("full") && response.optJSONArray("added").length() == 0 && response.optJSONArray("changed").length() == 0
+                    && response.optJSONArray("removed").length() == 0;
+            response.put("status", true);
+            response.put("message", empty ? PluginUtils.NO_CHANGES : PluginUtils.NETWORK_DISCOVERY_SUCCESS);
+            sink.send(true, response);
+        } catch (JSONException e) {
+            Log.v(TAG, "Error on plugin serialization: " + e.getMessage());
+            buildStatusMessage(false, e.getMessage(), sink);
+        }
+    }
+
+    /**
+     * Lists the hosts the kernel already knows on the tether link, from the
+     * neighbor (ARP) cache, within milliseconds and without any SSDP traffic.
+     * Optionally those hosts are probed right away with unicast M-SEARCHes,
+     * which also works where multicast is filtered.
+     *
+     * @param probe true to revalidate the neighbors, false to only list them
+     * @param st What exactly is expected to be searched over the network
+     * @param timeout MSEC to wait for the probe answers
+     */
+    public void neighbors(final boolean probe, final String st, final int timeout, final ResultSink sink) {
+        try {
+            String netIf = this.connector.getInterface().getName();
+            List<JSONObject> neighbors;
+            try {
+                neighbors = NeighborTable.read(NeighborTable.PROC_NET_ARP, netIf);
+            } catch (IOException e) {
+                // Android 10+ denies the table to apps
+                Log.v(TAG, "Neighbor table unavailable: " + e.getMessage());
+                buildStatusMessage(false, PluginUtils.NEIGHBOR_TABLE_UNAVAILABLE, sink);
+                return;
+            }
+            if (probe) {
+                JSONArray addresses = new JSONArray();
+                for (JSONObject neighbor : neighbors) {
+                    addresses.put(neighbor.optString("ipAddress"));
+                }
+                if (addresses.length() > 0) {
+                    revalidate(addresses, st, timeout, sink);
+                    return;
+                }
+            }
+            if (neighbors.size() > 0) {
+                buildStatusMessage(true, new JSONArray(neighbors), sink);
+            } else {
+                buildStatusMessage(false, PluginUtils.NO_RESULTS, sink);
+            }
+        } catch (IOException e) {
+            buildStatusMessage(false, e.getMessage(), sink);
+        }
+    }
+
+    /**
+     * Sends unicast M-SEARCHes in parallel to already known devices and
+     * collects their answers on a transport of its own. Every parsed answer
+     * is kept. It returns as soon as every device answered at least once,
+     * except for ssdp:all which a device may answer once per service, then
+     * the answers are drained until the timeout.
+     *
+     * @param addresses IPV4 literals to revalidate, null or empty for every device found so far
+     * @param st What exactly is expected to be searched over the network
+     * @param timeout MSEC to wait for the answers
+     */
+    public void revalidate(final JSONArray addresses, final String st, final int timeout, final ResultSink sink) {
+        JSONArray ssdpList = new JSONArray();
+        Set<InetAddress> targets = new HashSet<>();
+        PacketQueue queue = new PacketQueue(PluginUtils.DEFAULT_QUEUE_CAPACITY, PacketQueue.BackPressure.BLOCK);
+        UsbMulticast transport = null;
+        SSDPReceiver receiver = null;
+        try {
+            List<String> known = this.registry.getAddresses();
+            int count = (addresses != null && addresses.length() > 0) ? addresses.length() : known.size();
+            for (int i = 0; i < count; i++) {
+                Object address = (addresses != null && addresses.length() > 0) ? addresses.opt(i) : known.get(i);
+                if (!PluginUtils.isIpv4Literal(address)) {
+                    buildStatusMessage(false, PluginUtils.INVALID_ADDRESS, sink);
+                    return;
+                }
+                // IP literals, resolving them needs no DNS lookup
+                targets.add(InetAddress.getByName((String) address));
+            }
+            if (targets.isEmpty()) {
+                buildStatusMessage(false, PluginUtils.NO_RESULTS, sink);
+                return;
+            }
+            Set<InetAddress> pending = new HashSet<>(targets);
+            boolean untilTimeout = PluginUtils.SSDP_ALL.equals(st);
+            transport = openTransport(0);
+            SSDPReceiver started = new SSDPReceiver(transport, queue, null, System.currentTimeMillis() + timeout);
+            this.executor.execute(started);
+            // only a running receiver closes the queue, the finally block
+            // waits for it
+            receiver = started;
+            for (InetAddress address : targets) {
+                transport.sendTo(st, address);
+            }
+            SSDPPacket packet;
+            while ((packet = queue.take()) != null) {
+                if (!targets.contains(packet.getAddress())) {
+                    continue;
+                }
+                SSDPParser ss = parseMessage(packet.getPayload());
+                if (ss == null) {
+                    continue;
+                }
+                pending.remove(packet.getAddress());
+                this.registry.update(ss);
+                JSONObject ssObj = jsonifyMessage(ss);
+                if (ssObj.length() > 0) {
+                    ssdpList.put(ssObj);
+                }
+                if (pending.isEmpty() && !untilTimeout) {
+                    receiver.stop();
+                }
+            }
+            if (receiver.getError() != null) {
+                throw receiver.getError();
+            }
+            buildRevalidateMessage(ssdpList, pending, sink);
+        } catch (IOException e) {
+            buildStatusMessage(false, e.getMessage(), sink);
+        } catch (RuntimeException e) {
+            // i.e. the executor rejected the receiver
+            buildStatusMessage(false, e.getMessage(), sink);
+            throw e;
+        } finally {
+            if (receiver != null) {
+                receiver.stop();
+                // the receiver must be done with the socket before tearing down
+                while (queue.take() != null) {
+                    continue;
+                }
+            }
+            queue.close();
+            closeTransport(transport);
+        }
+    }
+
+    /**
+     * Builds complaint revalidation message
+     *
+     * @param data
+     *            Json array contaning parsed response(s)
+     * @param missing
+     *            addresses which did not answer
+     */
+    private static void buildRevalidateMessage(final JSONArray data, final Set<InetAddress> missing, final ResultSink sink) {
+        JSONObject response = new JSONObject();
+        JSONArray missingList = new JSONArray();
+        for (InetAddress address : missing) {
+            missingList.put(address.getHostAddress());
+        }
+        try {
+            response.put("status", true);
+            response.put("data", data);
+            response.put("missing", missingList);
+            response.put("message", PluginUtils.REVALIDATION_DONE);
+        } catch (JSONException e) {
+            Log.v(TAG, "Error on plugin serialization: " + e.getMessage());
+        }
+        sink.send(true, response);
+    }
+
+    /**
+     * Starts (or restarts with new options) the liveness monitor, only
+     * up/down transitions are pushed to the sink
+     *
+     * @param options {method, searchTarget, minInterval, maxInterval, timeout}
+     */
+    public synchronized void startMonitor(final JSONObject options, final ResultSink sink) {
+        stopMonitor();
+        this.monitorSink = sink;
+        this.monitor = new DeviceMonitor(this.registry, new DeviceMonitor.Listener() {
+
+            @Override
+            public void onTransition(final JSONObject device, final boolean alive) {
+                JSONObject response = new JSONObject();
+                try {
+                    response.put("status", true);
+                    response.put("data", device);
+                    response.put("message", alive ? PluginUtils.DEVICE_UP : PluginUtils.DEVICE_DOWN);
+                } catch (JSONException e) {
+                    Log.v(TAG, "Error on plugin serialization: " + e.getMessage());
+                }
+                sink.send(true, response);
+            }
+        }, options.optString("method", DeviceMonitor.METHOD_SSDP), options.optString("searchTarget", PluginUtils.SSDP_ALL),
+                options.optLong("minInterval", PluginUtils.DEFAULT_MONITOR_MIN_INTERVAL),
+                options.optLong("maxInterval", PluginUtils.DEFAULT_MONITOR_MAX_INTERVAL),
+                options.optInt("timeout", PluginUtils.DEFAULT_REVALIDATE_TIMEOUT));
+        this.monitor.start();
+        buildStatusMessage(true, PluginUtils.MONITOR_STARTED, sink);
+    }
+
+    /**
+     * Stops the liveness monitor and releases its sink
+     */
+    public synchronized void stopMonitor() {
+        if (this.monitor != null) {
+            this.monitor.stop();
+            this.monitor = null;
+        }
+        if (this.monitorSink != null) {
+            this.monitorSink.close(PluginUtils.MONITOR_STOPPED);
+            this.monitorSink = null;
+        }
+    }
+
+    /**
+     * Builds complaint data format message
+     *
+     * @param status
+     *            message status representation
+     * @param message
+     *            String containg extended status
+     *
+     * @return boolean always true, representation of a registered plugin method
+     */
+    static boolean buildStatusMessage(final boolean status, final String message, final ResultSink sink) {
+        JSONObject response = new JSONObject();
+        try {
+            response.put("status", status);
+            response.put("message", message);
+        } catch (JSONException e) {
+            Log.v(TAG, "Error on plugin serialization: " + e.getMessage());
+        }
+        sink.send(status, response);
+        // Returns execute method result (plugin call)
+        return true;
+    }
+
+    /**
+     * Builds complaint data format message
+     *
+     * @param status
+     *            message status representation
+     * @param data
+     *            Json array contaning parsed response(s)
+     */
+    private static void buildStatusMessage(final boolean status, final JSONArray data, final ResultSink sink) {
+        JSONObject response = new JSONObject();
+        try {
+            response.put("status", status);
+            response.put("data", data);
+            response.put("message", PluginUtils.NETWORK_DISCOVERY_SUCCESS);
+        } catch (JSONException e) {
+            Log.v(TAG, "Error on plugin serialization: " + e.getMessage());
+        }
+        sink.send(status, response);
+    }
+
+    /**
+     * Parses String response data
+     *
+     * @param message
+     *            socket response raw data
+     *
+     * @return SSDPParser parsed ssdp data, null if not a valid response
+     */
+    private static SSDPParser parseMessage(final String message) {
+        try {
+            return new SSDPParser(message);
+        } catch (SSDPParserException e) {
+            Log.v(TAG, "Invalid payload for SSDP: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Converts parsed response data to JSON object
+     *
+     * @param ss
+     *            parsed ssdp data
+     *
+     * @return JSONObject parsed ssdp data, empty on serialization errors
+     */
+    private static JSONObject jsonifyMessage(final SSDPParser ss) {
+        try {
+            return ss.toJSON();
+        } catch (JSONException e) {
+            Log.v(TAG, "Invalid payload for SSDP: " + e.getMessage());
+            return new JSONObject();
+        }
+    }
+
+}
@@ -0,0 +1,236 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.cordova.usb.tethered.discovery;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Discovery call arguments as sent by www/UsbDiscovery.js
+ */
+class DiscoveryOptions {
+
+    private final String st;
+
+    private final double version;
+
+    private final int mx;
+
+    private int receiveBufferSize = 0;
+
+    private int queueCapacity = PluginUtils.DEFAULT_QUEUE_CAPACITY;
+
+    private PacketQueue.BackPressure backPressure = PacketQueue.BackPressure.BLOCK;
+
+    private SSDPFilter filter = null;
+
+    private boolean adaptive = false;
+
+    private double adaptivePercentile = PluginUtils.DEFAULT_ADAPTIVE_PERCENTILE;
+
+    private long adaptiveMargin = PluginUtils.DEFAULT_ADAPTIVE_MARGIN;
+
+    private boolean capture = false;
+
+    private boolean onlyChanged = false;
+
+    private boolean delta = false;
+
+    private String generation = "";
+
+    /**
+     * Constructor
+     *
+     * @param st
+     *            What exactly is expected to be searched over the network
+     * @param version
+     *            UPnP version
+     * @param mx
+     *            maximum wait time, each UPnP version has its own treshold
+     */
+    public DiscoveryOptions(final String st, final double version, final int mx) {
+        this.st = st;
+        this.version = version;
+        this.mx = mx;
+    }
+
+    /**
+     * Parses the discovery action arguments: [st, version, mx, options]
+     *
+     * @param args
+     *            JSONArry of arguments for the plugin.
+     * @return DiscoveryOptions parsed options
+     * @throws JSONException
+     *             in case of missing mandatory arguments or invalid filter
+     */
+    public static DiscoveryOptions fromArgs(final JSONArray args) throws JSONException {
+        DiscoveryOptions options = new DiscoveryOptions(args.optString(0), Double.parseDouble(args.optString(1)), args.getInt(2));
+        options.setExtended(args.optJSONObject(3));
+        return options;
+    }
+
+    /**
+     * Parses the replay action arguments: [file, realtime, options], only
+     * the pipeline options (filter, queue) apply to a replay
+     *
+     * @param args
+     *            JSONArry of arguments for the plugin.
+     * @return DiscoveryOptions parsed options
+     * @throws JSONException
+     *             in case of invalid filter
+     */
+    public static DiscoveryOptions forReplay(final JSONArray args) throws JSONException {
+        DiscoveryOptions options = new DiscoveryOptions(PluginUtils.SSDP_ALL, PluginUtils.UPNP_VERSION_11, 1);
+        options.setExtended(args.optJSONObject(2));
+        return options;
+    }
+
+    private void setExtended(final JSONObject extra) throws JSONException {
+        if (extra == null) {
+            return;
+        }
+        this.receiveBufferSize = extra.optInt("receiveBufferSize", this.receiveBufferSize);
+        this.queueCapacity = Math.max(1, extra.optInt("queueCapacity", this.queueCapacity));
+        this.backPressure = PacketQueue.BackPressure.fromString(extra.optString("backPressure"));
+        this.filter = SSDPFilter.fromJSON(extra.optJSONObject("filter"));
+        this.adaptive = extra.optBoolean("adaptive", this.adaptive);
+        this.adaptivePercentile = extra.optDouble("adaptivePercentile", this.adaptivePercentile);
+        this.adaptiveMargin = Math.max(0, extra.optLong("adaptiveMargin", this.adaptiveMargin));
+        this.capture = extra.optBoolean("capture", this.capture);
+        this.onlyChanged = extra.optBoolean("onlyChanged", this.onlyChanged);
+        this.delta = extra.optBoolean("delta", this.delta);
+        this.generation = extra.optString("generation", this.generation);
+    }
+
+    public String getSt() {
+        return this.st;
+    }
+
+    public double getVersion() {
+        return this.version;
+    }
+
+    public int getMx() {
+        return this.mx;
+    }
+
+    /**
+     * @return int requested SO_RCVBUF in bytes, 0 keeps the system default
+     */
+    public int getReceiveBufferSize() {
+        return this.receiveBufferSize;
+    }
+
+    public int getQueueCapacity() {
+        return this.queueCapacity;
+    }
+
+    public PacketQueue.BackPressure getBackPressure() {
+        return this.backPressure;
+    }
+
+    /**
+     * @return SSDPFilter response filter, null if every response is wanted
+     */
+    public SSDPFilter getFilter() {
+        return this.filter;
+    }
+
+    /**
+     * @return boolean true if the search window is learned from previous
+     *         searches
+     */
+    public boolean isAdaptive() {
+        return this.adaptive;
+    }
+
+    public double getAdaptivePercentile() {
+        return this.adaptivePercentile;
+    }
+
+    /**
+     * @return long MSEC added to the learned latency percentile
+     */
+    public long getAdaptiveMargin() {
+        return this.adaptiveMargin;
+    }
+
+    /**
+     * @return boolean true if every received datagram is written to the
+     *         capture file
+     */
+    public boolean isCapture() {
+        return this.capture;
+    }
+
+    /**
+     * @return boolean true if only new, rebooted or reconfigured devices are
+     *         reported
+     */
+    public boolean isOnlyChanged() {
+        return this.onlyChanged;
+    }
+
+    /**
+     * @return boolean true if only what changed since the generation token is
+     *         reported
+     */
+    public boolean isDelta() {
+        return this.delta;
+    }
+
+    /**
+     * @return String generation token of the previous delta, empty for a
+     *         full snapshot
+     */
+    public String getGeneration() {
+        return this.generation;
+    }
+
+    /**
+     * Identity of the device set searched, whatever the result mode
+     *
+     * @return String (st, version, mx, filter) key
+     */
+    public String getSearchKey() {
+        return this.st + "|" + this.version + "|" + this.mx + "|" + ((this.filter != null) ? this.filter.getKey() : "");
+    }
+
+    /**
+     * Identity of the search, requests with the same key get the same
+     * responses and can share one search
+     *
+     * @return String (st, version, mx, filter, window, capture, result mode) key
+     */
+    public String getKey() {
+        return getSearchKey() + "|" + (this.adaptive ? this.adaptivePercentile + "/" + this.adaptiveMargin : "fixed") + "|" + this.capture
+                + "|" + this.onlyChanged + "|" + this.delta + "|" + this.generation;
+    }
+
+    @Override
+    public String toString() {
+        return "DiscoveryOptions [st=" + this.st + ", version=" + this.version + ", mx=" + this.mx + ", receiveBufferSize="
+                + this.receiveBufferSize + ", queueCapacity=" + this.queueCapacity + ", backPressure=" + this.backPressure
+                + ", adaptive=" + this.adaptive + ", capture=" + this.capture
+                + ", onlyChanged=" + this.onlyChanged + ", delta=" + this.delta + ", generation=" + this.generation + "]";
+    }
+}
@@ -0,0 +1,247 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.cordova.usb.tethered.discovery;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Device set of one search (same st, version, mx and filter) versioned by a
+ * generation counter. Each search that adds, changes or removes a device
+ * bumps the generation, so a client holding a generation token only needs
+ * what happened after it. A device is removed only after MISS_THRESHOLD
+ * searches in a row without its response, a single lost response is not a
+ * removal.
+ *
+ * Tokens are "epoch:generation", the epoch tells generations of different
+ * plugin instances apart. Unknown, foreign or too old tokens get a full
+ * snapshot.
+ */
+class DiscoveryState {
+
+    /**
+     * Generations removed devices are remembered for, older tokens get a full
+     * snapshot
+     */
+    final static long TOMBSTONE_GENERATIONS = 16;
+
+    /**
+     * Consecutive searches without a response before a device is removed
+     */
+    final static int MISS_THRESHOLD = 3;
+
+    /**
+     * One device of the set
+     */
+    private static class Entry {
+        SSDPParser device;
+        JSONObject json;
+        long modified;
+        /**
+         * Generation the device disappeared on, -1 while present
+         */
+        long removed = -1;
+        /**
+         * Searches in a row the device did not answer
+         */
+        int misses = 0;
+        /**
+         * Generations the device was added and removed on, alternately,
+         * starting with an addition
+         */
+        final List<Long> spans = new ArrayList<>();
+
+        /**
+         * @return boolean true if the device was in the set on generation
+         */
+        boolean isPresentAt(final long generation) {
+            int count = 0;
+            for (long span : this.spans) {
+                if (span > generation) {
+                    break;
+                }
+                count++;
+            }
+            return count % 2 == 1;
+        }
+    }
+
+    private final String epoch;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    private long generation = 0;
+
+    /**
+     * Oldest generation deltas can still be computed from
+     */
+    private long floor = 0;
+
+    /**
+     * Constructor
+     *
+     * @param epoch
+     *            plugin instance identifier, part of the tokens
+     */
+    public DiscoveryState(final String epoch) {
+        this.epoch = epoch;
+    }
+
+    /**
+     * Applies the result of a search: seen devices are added (or re-added)
+     * or changed, devices missing for MISS_THRESHOLD searches are removed.
+     * Only added and changed devices are jsonified.
+     *
+     * @param seen
+     *            parsed responses of the search by USN
+     * @throws JSONException
+     *             serialization error
+     */
+    public synchronized void update(final Map<String, SSDPParser> seen) throws JSONException {
+        long next = this.generation + 1;
+        boolean changed = false;
+        for (SSDPParser device : seen.values()) {
+            Entry entry = this.entries.get(device.getUsn());
+            if (entry == null) {
+                entry = new Entry();
+                this.entries.put(device.getUsn(), entry);
+            }
+            if (entry.removed >= 0 || entry.spans.isEmpty()) {
+                entry.removed = -1;
+                entry.spans.add(next);
+                entry.modified = next;
+                entry.json = device.toJSON();
+                changed = true;
+            } else if (entry.device.isChanged(device)) {
+                entry.modified = next;
+                entry.json = device.toJSON();
+                changed = true;
+            }
+            entry.device = device;
+            entry.misses = 0;
+        }
+        for (Map.Entry<String, Entry> item : this.entries.entrySet()) {
+            Entry entry = item.getValue();
+            if (entry.removed < 0 && !seen.containsKey(item.getKey()) && ++entry.misses >= MISS_THRESHOLD) {
+                entry.removed = next;
+                entry.spans.add(next);
+                changed = true;
+            }
+        }
+        if (changed) {
+            this.generation = next;
+            prune();
+        }
+    }
+
+    /**
+     * Forgets devices removed more than TOMBSTONE_GENERATIONS ago, and the
+     * add/remove history no token can reach anymore
+     */
+    private void prune() {
+        long limit = this.generation - TOMBSTONE_GENERATIONS;
+        for (Iterator<Entry> it = this.entries.values().iterator(); it.hasNext();) {
+            Entry entry = it.next();
+            if (entry.removed >= 0 && entry.removed <= limit) {
+                it.remove();
+                this.floor = Math.max(this.floor, entry.removed);
+            }
+        }
+        for (Entry entry : this.entries.values()) {
+            // an add/remove pair before the floor doesn't change the presence
+            // on any generation a delta can be computed from
+            while (entry.spans.size() > 2 && entry.spans.get(1) <= this.floor) {
+                entry.spans.remove(0);
+                entry.spans.remove(0);
+            }
+        }
+    }
+
+    public synchronized String getToken() {
+        return this.epoch + ":" + this.generation;
+    }
+
+    /**
+     * Builds what changed after the generation of a token
+     *
+     * @param token
+     *            token of a previous delta, null or empty for a full snapshot
+     * @return JSONObject {generation, full, added, changed, removed}, removed
+     *         holds USNs
+     * @throws JSONException
+     *             serialization error
+     */
+    public synchronized JSONObject delta(final String token) throws JSONException {
+        long since = parse(token);
+        boolean full = since < this.floor || since > this.generation;
+        JSONArray added = new JSONArray();
+        JSONArray changed = new JSONArray();
+        JSONArray removed = new JSONArray();
+        for (Map.Entry<String, Entry> item : this.entries.entrySet()) {
+            Entry entry = item.getValue();
+            boolean present = entry.removed < 0;
+            if (full) {
+                if (present) {
+                    added.put(entry.json);
+                }
+                continue;
+            }
+            // what the client holds, a device re-added after a removal the
+            // client never saw is a change, not an addition
+            boolean known = entry.isPresentAt(since);
+            if (known && !present) {
+                removed.put(item.getKey());
+            } else if (!known && present) {
+                added.put(entry.json);
+            } else if (present && entry.modified > since) {
+                changed.put(entry.json);
+            }
+        }
+        JSONObject delta = new JSONObject();
+        delta.put("generation", getToken());
+        delta.put("full", full);
+        delta.put("added", added);
+        delta.put("changed", changed);
+        delta.put("removed", removed);
+        return delta;
+    }
+
+    /**
+     * @return long generation of the token, -1 if it isn't one of ours
+     */
+    private long parse(final String token) {
+        if (token == null || !token.startsWith(this.epoch + ":")) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(token.substring(this.epoch.length() + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
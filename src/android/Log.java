@@ -0,0 +1,59 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.cordova.usb.tethered.discovery;
+
+/**
+ * Logging facade of the discovery engine, logs through java.util.logging
+ * until the platform installs its own Logger (AndroidLogger on Android)
+ */
+final class Log {
+
+    private static volatile Logger logger = new Logger() {
+
+        @Override
+        public void v(final String tag, final String message) {
+            java.util.logging.Logger.getLogger(tag).fine(message);
+        }
+    };
+
+    private Log() {
+    }
+
+    /**
+     * @param logger
+     *            platform logger
+     */
+    static void setLogger(final Logger logger) {
+        Log.logger = logger;
+    }
+
+    /**
+     * Verbose message
+     *
+     * @param tag
+     *            Logging TAG
+     * @param message
+     *            message
+     */
+    static void v(final String tag, final String message) {
+        logger.v(tag, message);
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.cordova.usb.tethered.discovery;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Reads the kernel neighbor (ARP) cache, the hosts the kernel already talked
+ * to on the tether link are known before any SSDP traffic. Layout:
+ *
+ * IP address HW type Flags HW address Mask Device
+ * 192.168.42.129 0x1 0x2 aa:bb:cc:dd:ee:ff * rndis0
+ */
+class NeighborTable {
+
+    /**
+     * Logging TAG
+     */
+    private static final String TAG = "NeighborTable";
+
+    /**
+     * Kernel neighbor table
+     */
+    final static File PROC_NET_ARP = new File("/proc/net/arp");
+
+    /**
+     * ATF_COM, the entry is resolved
+     */
+    private final static int ATF_COM = 0x2;
+
+    private final static String NO_HW_ADDRESS = "00:00:00:00:00:00";
+
+    private NeighborTable() {
+    }
+
+    /**
+     * Lists the resolved neighbors of an interface
+     *
+     * @param table
+     *            neighbor table file, usually PROC_NET_ARP
+     * @param netIf
+     *            interface name
+     * @return List of {ipAddress, hwAddress} objects
+     * @throws IOException
+     *             table can't be read, newer Android versions deny it to apps
+     */
+    public static List<JSONObject> read(final File table, final String netIf) throws IOException {
+        List<JSONObject> neighbors = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new FileReader(table));
+        try {
+            // header
+            String line = reader.readLine();
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.trim().split("\\s+");
+                if (fields.length < 6 || !fields[5].equals(netIf) || fields[3].equals(NO_HW_ADDRESS)) {
+                    continue;
+                }
+                try {
+                    if ((Integer.decode(fields[2]) & ATF_COM) == 0) {
+                        continue;
+                    }
+                    JSONObject neighbor = new JSONObject();
+                    neighbor.put("ipAddress", fields[0]);
+                    neighbor.put("hwAddress", fields[3]);
+                    neighbors.add(neighbor);
+                } catch (NumberFormatException e) {
+                    Log.v(TAG, "Unexpected neighbor entry: " + line);
+                } catch (JSONException e) {
+                    Log.v(TAG, "Error on plugin serialization: " + e.getMessage());
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return neighbors;
+    }
+}
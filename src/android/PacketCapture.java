@@ -0,0 +1,197 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.cordova.usb.tethered.discovery;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+
+/**
+ * Append-only binary capture of received datagrams, replayed by
+ * CaptureReplay. One instance per file is shared by every capturing search:
+ * each search records a Session in memory, which is appended whole under
+ * the capture lock once the search is done, so concurrent searches never
+ * interleave their records. The file is rotated on append once past its
+ * size limit. Layout, big endian:
+ *
+ * header: int MAGIC, short VERSION (once, when the file is created)
+ * session: byte SESSION, long search sent time (System.nanoTime)
+ * packet: byte PACKET, long receive time (System.nanoTime), byte address
+ * length, address, unsigned short data length, data
+ */
+class PacketCapture {
+
+    /**
+     * Logging TAG
+     */
+    private static final String TAG = "PacketCapture";
+
+    /**
+     * "SSDP"
+     */
+    final static int MAGIC = 0x53534450;
+
+    final static short VERSION = 1;
+
+    final static byte SESSION = 'S';
+
+    final static byte PACKET = 'P';
+
+    private final File file;
+
+    /**
+     * Datagrams received by one search, kept in memory until appended
+     */
+    static class Session {
+
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        private final DataOutputStream out = new DataOutputStream(this.buffer);
+
+        private boolean failed = false;
+
+        private Session(final long sentAt) {
+            try {
+                this.out.writeByte(SESSION);
+                this.out.writeLong(sentAt);
+            } catch (IOException e) {
+                fail(e.getMessage());
+            }
+        }
+
+        /**
+         * Records a datagram, capture errors never break the discovery, the
+         * session is just abandoned. So is a session past
+         * PluginUtils.MAX_CAPTURE_SIZE.
+         *
+         * @param data
+         *            receive buffer
+         * @param length
+         *            number of valid bytes on data
+         * @param address
+         *            source address
+         * @param timestamp
+         *            monotonic receive time (System.nanoTime)
+         */
+        public synchronized void write(final byte[] data, final int length, final InetAddress address, final long timestamp) {
+            if (this.failed) {
+                return;
+            }
+            if (this.buffer.size() + length > PluginUtils.MAX_CAPTURE_SIZE) {
+                fail("session too big");
+                return;
+            }
+            try {
+                byte[] addr = address.getAddress();
+                this.out.writeByte(PACKET);
+                this.out.writeLong(timestamp);
+                this.out.writeByte(addr.length);
+                this.out.write(addr);
+                this.out.writeShort(length);
+                this.out.write(data, 0, length);
+            } catch (IOException e) {
+                fail(e.getMessage());
+            }
+        }
+
+        private void fail(final String reason) {
+            this.failed = true;
+            Log.v(TAG, "Capture abandoned: " + reason);
+        }
+
+        private synchronized byte[] toByteArray() {
+            return this.failed ? null : this.buffer.toByteArray();
+        }
+    }
+
+    /**
+     * Constructor, nothing is written until the first append
+     *
+     * @param file
+     *            capture file, created if needed
+     */
+    public PacketCapture(final File file) {
+        this.file = file;
+    }
+
+    /**
+     * Starts a new session, packets are replayed relative to it
+     *
+     * @param sentAt
+     *            monotonic time (System.nanoTime) the search was sent
+     * @return Session to record the datagrams of the search on
+     */
+    public Session startSession(final long sentAt) {
+        return new Session(sentAt);
+    }
+
+    /**
+     * Appends a finished session to the file. Once the file reached
+     * PluginUtils.MAX_CAPTURE_SIZE it's rotated to file.1 (replacing the
+     * previous one) and a new file is started.
+     *
+     * @param session
+     *            session of a search, nothing more is recorded on it
+     *            afterwards
+     */
+    public synchronized void append(final Session session) {
+        byte[] data = session.toByteArray();
+        if (data == null) {
+            return;
+        }
+        DataOutputStream out = null;
+        try {
+            if (this.file.length() >= PluginUtils.MAX_CAPTURE_SIZE) {
+                rotate();
+            }
+            boolean created = !this.file.exists() || this.file.length() == 0;
+            out = new DataOutputStream(new FileOutputStream(this.file, true));
+            if (created) {
+                out.writeInt(MAGIC);
+                out.writeShort(VERSION);
+            }
+            out.write(data);
+        } catch (IOException e) {
+            Log.v(TAG, "Capture abandoned: " + e.getMessage());
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    Log.v(TAG, "Error closing capture, supressed.");
+                }
+            }
+        }
+    }
+
+    private void rotate() throws IOException {
+        File rotated = new File(this.file.getPath() + ".1");
+        if ((rotated.exists() && !rotated.delete()) || !this.file.renameTo(rotated)) {
+            Log.v(TAG, "Capture rotation failed, truncating");
+            if (!this.file.delete()) {
+                throw new IOException("Capture file can't be rotated: " + this.file);
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.cordova.usb.tethered.discovery;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded lock-free hand-off between the socket receive stage and the
+ * parse/serialize stage. Designed for one producer and one consumer thread.
+ */
+class PacketQueue {
+
+    /**
+     * What the producer does when the queue is full
+     */
+    enum BackPressure {
+        /**
+         * Discard the oldest queued packet, the receiver never stalls
+         */
+        DROP_OLDEST,
+        /**
+         * Park the receiver until the parser frees a slot, packets are
+         * buffered by the kernel (see SO_RCVBUF) meanwhile
+         */
+        BLOCK;
+
+        /**
+         * Maps the JS option value to a policy
+         *
+         * @param name
+         *            "dropOldest" or "block", anything else falls back to
+         *            BLOCK
+         * @return BackPressure policy
+         */
+        static BackPressure fromString(final String name) {
+            return PluginUtils.BACK_PRESSURE_DROP_OLDEST.equalsIgnoreCase(name) ? DROP_OLDEST : BLOCK;
+        }
+    }
+
+    /**
+     * Park interval while waiting on the other stage, the other stage also
+     * unparks us, this is just a safety net for lost wake ups
+     */
+    private final static long PARK_NANOS = 1000000L;
+
+    private final ConcurrentLinkedQueue<SSDPPacket> packets = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Reserved slots, may be ahead of packets.size() while an offer is in
+     * progress
+     */
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final int capacity;
+
+    private final BackPressure policy;
+
+    private volatile boolean closed = false;
+
+    private volatile Thread producer = null;
+
+    private volatile Thread consumer = null;
+
+    /**
+     * Constructor
+     *
+     * @param capacity
+     *            maximum number of queued packets
+     * @param policy
+     *            what to do when the queue is full
+     */
+    public PacketQueue(final int capacity, final BackPressure policy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Invalid queue capacity: " + capacity);
+        }
+        this.capacity = capacity;
+        this.policy = policy;
+    }
+
+    /**
+     * Enqueues a packet applying the back-pressure policy
+     *
+     * @param packet
+     *            received datagram
+     * @return boolean false if the queue was closed before the packet could
+     *         be enqueued
+     */
+    public boolean offer(final SSDPPacket packet) {
+        this.producer = Thread.currentThread();
+        for (;;) {
+            if (this.closed) {
+                return false;
+            }
+            int n = this.size.get();
+            if (n < this.capacity) {
+                if (this.size.compareAndSet(n, n + 1)) {
+                    break;
+                }
+            } else if (this.policy == BackPressure.DROP_OLDEST) {
+                if (this.packets.poll() != null) {
+                    this.size.decrementAndGet();
+                    this.dropped.incrementAndGet();
+                }
+            } else {
+                LockSupport.parkNanos(this, PARK_NANOS);
+            }
+        }
+        this.packets.offer(packet);
+        LockSupport.unpark(this.consumer);
+        return true;
+    }
+
+    /**
+     * Dequeues the next packet, waiting for the producer if needed
+     *
+     * @return SSDPPacket next packet or null once the queue is closed and
+     *         drained
+     */
+    public SSDPPacket take() {
+        this.consumer = Thread.currentThread();
+        for (;;) {
+            boolean wasClosed = this.closed;
+            SSDPPacket packet = this.packets.poll();
+            if (packet != null) {
+                this.size.decrementAndGet();
+                LockSupport.unpark(this.producer);
+                return packet;
+            }
+            if (wasClosed) {
+                return null;
+            }
+            LockSupport.parkNanos(this, PARK_NANOS);
+        }
+    }
+
+    /**
+     * No more packets will be accepted, pending ones can still be taken
+     */
+    public void close() {
+        this.closed = true;
+        LockSupport.unpark(this.consumer);
+        LockSupport.unpark(this.producer);
+    }
+
+    public boolean isClosed() {
+        return this.closed;
+    }
+
+    /**
+     * @return long number of packets discarded by DROP_OLDEST
+     */
+    public long getDropped() {
+        return this.dropped.get();
+    }
+}
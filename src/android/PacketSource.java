@@ -0,0 +1,51 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.cordova.usb.tethered.discovery;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+
+/**
+ * Where the receive stage gets its datagrams from: the live socket
+ * (UsbMulticast) or a recorded session (CaptureReplay)
+ */
+interface PacketSource {
+
+    /**
+     * Next datagram
+     *
+     * @param pkg
+     *            receive datagram owned by the caller, sources reading a
+     *            socket receive into it
+     * @param filter
+     *            response filter, null accepts everything
+     * @return SSDPPacket raw datagram, null on timeout or if the filter
+     *         rejected it
+     * @throws IOException
+     *             - Underling source error
+     */
+    SSDPPacket receive(DatagramPacket pkg, SSDPFilter filter) throws IOException;
+
+    /**
+     * @return boolean false once no more datagrams can come from this source
+     */
+    boolean isOpen();
+}
@@ -20,10 +20,9 @@
 
 package org.apache.cordova.usb.tethered.discovery;
 
-import android.util.Log;
-import android.text.TextUtils;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.util.regex.Pattern;
 
 public class PluginUtils {
 	/**
@@ -78,6 +77,43 @@ public class PluginUtils {
 	 * Constant helper for AngularJS translate Message: Search done with success
 	 */
 	final static String NETWORK_DISCOVERY_SUCCESS = "NETWORK_DISCOVERY_SUCCESS";
+	/**
+	 * Constant helper for AngularJS translate Message: Search done, devices
+	 * answered but none changed since last seen
+	 */
+	final static String NO_CHANGES = "NO_CHANGES";
+	/**
+	 * Constant helper for AngularJS translate Message: Revalidation done,
+	 * devices which did not answer are listed as missing
+	 */
+	final static String REVALIDATION_DONE = "REVALIDATION_DONE";
+	/**
+	 * Constant helper for AngularJS translate Message: Revalidation address
+	 * is not an IPV4 literal
+	 */
+	final static String INVALID_ADDRESS = "INVALID_ADDRESS";
+	/**
+	 * Constant helper for AngularJS translate Message: The kernel neighbor
+	 * (ARP) cache can't be read, denied to apps on Android 10+
+	 */
+	final static String NEIGHBOR_TABLE_UNAVAILABLE = "NEIGHBOR_TABLE_UNAVAILABLE";
+	/**
+	 * Constant helper for AngularJS translate Message: Device monitor started
+	 */
+	final static String MONITOR_STARTED = "MONITOR_STARTED";
+	/**
+	 * Constant helper for AngularJS translate Message: Device monitor stopped
+	 */
+	final static String MONITOR_STOPPED = "MONITOR_STOPPED";
+	/**
+	 * Constant helper for AngularJS translate Message: Monitored device is back
+	 */
+	final static String DEVICE_UP = "DEVICE_UP";
+	/**
+	 * Constant helper for AngularJS translate Message: Monitored device stopped
+	 * answering
+	 */
+	final static String DEVICE_DOWN = "DEVICE_DOWN";
 	/**
 	 * USB state constant
 	 */
@@ -99,14 +135,76 @@ public class PluginUtils {
 	 */
 	final static String[] UPNP_MSEARCH = { "M-SEARCH * HTTP/1.1", "HOST: 239.255.255.250:1900",
 			"MAN: \"ssdp:discover\"", "ST: %s", "MX: %s", "", "" };
+	/**
+	 * Unicast M-SEARCH message body, UPnP 1.1 only, sent straight to a device
+	 */
+	final static String[] UPNP_UNICAST_MSEARCH = { "M-SEARCH * HTTP/1.1", "HOST: %s:%s",
+			"MAN: \"ssdp:discover\"", "ST: %s", "", "" };
+	/**
+	 * SSDP port
+	 */
+	final static int SSDP_PORT = 1900;
 	/**
 	 * SSDP IGMP traffic Group
 	 */
-	final static SocketAddress GROUP = new InetSocketAddress("239.255.255.250", 1900);
+	final static SocketAddress GROUP = new InetSocketAddress("239.255.255.250", SSDP_PORT);
 	/**
 	 * SSDP Time to Live
 	 */
 	final static int TTL = 4;
+	/**
+	 * Default number of datagrams buffered between receive and parse stages
+	 */
+	final static int DEFAULT_QUEUE_CAPACITY = 128;
+	/**
+	 * Back-pressure option value: discard oldest queued datagram when full
+	 */
+	final static String BACK_PRESSURE_DROP_OLDEST = "dropOldest";
+	/**
+	 * Adaptive search window: default response latency percentile to wait for
+	 */
+	final static double DEFAULT_ADAPTIVE_PERCENTILE = 99;
+	/**
+	 * Adaptive search window: default MSEC added to the latency percentile
+	 */
+	final static long DEFAULT_ADAPTIVE_MARGIN = 200;
+	/**
+	 * File (on the app files dir) holding the response latency histograms
+	 */
+	final static String TIMING_FILE = "ssdp-response-timing.bin";
+	/**
+	 * File (on the app files dir) the capture option appends datagrams to
+	 */
+	final static String CAPTURE_FILE = "ssdp-capture.bin";
+	/**
+	 * Capture file size (bytes) past which it's rotated on the next search
+	 */
+	final static long MAX_CAPTURE_SIZE = 1024 * 1024;
+	/**
+	 * Search target for every device/service
+	 */
+	final static String SSDP_ALL = "ssdp:all";
+	/**
+	 * Search target for root devices, one answer per device
+	 */
+	final static String UPNP_ROOT_DEVICE = "upnp:rootdevice";
+	/**
+	 * Default MSEC to wait for a unicast M-SEARCH answer
+	 */
+	final static int DEFAULT_REVALIDATE_TIMEOUT = 500;
+	/**
+	 * Dotted quad IPV4 literal
+	 */
+	final static Pattern IPV4_LITERAL = Pattern
+			.compile("^(25[0-5]|2[0-4]\\d|1\\d\\d|[1-9]?\\d)(\\.(25[0-5]|2[0-4]\\d|1\\d\\d|[1-9]?\\d)){3}$");
+	/**
+	 * Default MSEC between liveness probes after a device changed
+	 */
+	final static long DEFAULT_MONITOR_MIN_INTERVAL = 2000;
+	/**
+	 * Default MSEC between liveness probes of a long stable device
+	 */
+	final static long DEFAULT_MONITOR_MAX_INTERVAL = 30000;
 
 	/**
 	 * Builds SSDP M-SEARCH string for either UPnP 1.0 or 1.1, default 1.1
@@ -124,9 +222,58 @@ public class PluginUtils {
 		assert ((version == UPNP_VERSION_10 && mx >= 1 && mx <= 120)
 				|| (version == UPNP_VERSION_11 && mx >= 1 && mx <= 5)) : "Invalid mx parameter";
 		// Builds M - SEARCH
-		String msg = TextUtils.join("\r\n", UPNP_MSEARCH);
+		String msg = join("\r\n", UPNP_MSEARCH);
 		msg = String.format(msg, st, mx);
 		Log.v(TAG, "M-SEARCH: \n" + msg);
 		return msg;
 	}
+
+	/**
+	 * Builds an unicast SSDP M-SEARCH string (UPnP 1.1), no MX is sent as the
+	 * device answers right away
+	 *
+	 * @param st
+	 *            What exactly is expected to be searched over the network
+	 * @param host
+	 *            Device/Service IPV4 Address
+	 * @return M-SEARCH message
+	 */
+	public static String buildUnicastMSearch(String st, String host) {
+		String msg = join("\r\n", UPNP_UNICAST_MSEARCH);
+		msg = String.format(msg, host, SSDP_PORT, st);
+		Log.v(TAG, "Unicast M-SEARCH: \n" + msg);
+		return msg;
+	}
+
+	/**
+	 * Checks an address argument before resolving it, InetAddress.getByName
+	 * turns blank values into loopback and host names into DNS lookups
+	 *
+	 * @param address
+	 *            address argument, any JSON value
+	 * @return boolean true if address is an IPV4 literal string
+	 */
+	static boolean isIpv4Literal(Object address) {
+		return address instanceof String && IPV4_LITERAL.matcher((String) address).matches();
+	}
+
+	/**
+	 * Joins message lines
+	 *
+	 * @param delimiter
+	 *            line separator
+	 * @param lines
+	 *            message lines
+	 * @return joined message
+	 */
+	static String join(String delimiter, String[] lines) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < lines.length; i++) {
+			if (i > 0) {
+				sb.append(delimiter);
+			}
+			sb.append(lines[i]);
+		}
+		return sb.toString();
+	}
 }
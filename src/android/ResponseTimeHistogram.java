@@ -0,0 +1,155 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.cordova.usb.tethered.discovery;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Fixed width histogram of M-SEARCH response latencies (time between the
+ * search being sent and a response arriving) for one network interface
+ */
+class ResponseTimeHistogram {
+
+    /**
+     * Bucket width in MSEC
+     */
+    final static int BUCKET_MSEC = 25;
+
+    /**
+     * Number of regular buckets, covers 10 seconds, anything slower falls on
+     * the overflow bucket
+     */
+    final static int BUCKETS = 400;
+
+    /**
+     * Once this many samples are held every bucket is halved, old searches
+     * slowly fade so the window follows the network
+     */
+    final static long MAX_SAMPLES = 10000;
+
+    /**
+     * Regular buckets plus the overflow one
+     */
+    private final long[] counts = new long[BUCKETS + 1];
+
+    private long total = 0;
+
+    /**
+     * Number of searches recorded so far
+     */
+    private int searches = 0;
+
+    /**
+     * @param latency
+     *            response latency in MSEC
+     */
+    public void record(final long latency) {
+        int bucket = (int) Math.min(Math.max(latency, 0) / BUCKET_MSEC, BUCKETS);
+        this.counts[bucket]++;
+        this.total++;
+        if (this.total > MAX_SAMPLES) {
+            decay();
+        }
+    }
+
+    /**
+     * Marks the end of a search
+     */
+    public void searchDone() {
+        this.searches++;
+    }
+
+    private void decay() {
+        this.total = 0;
+        for (int i = 0; i < this.counts.length; i++) {
+            this.counts[i] /= 2;
+            this.total += this.counts[i];
+        }
+    }
+
+    /**
+     * @param percentile
+     *            between 0 and 100
+     * @return long upper bound in MSEC of the bucket holding the
+     *         percentile, -1 if it is on the overflow bucket or empty
+     */
+    public long getPercentile(final double percentile) {
+        if (this.total == 0) {
+            return -1;
+        }
+        long rank = (long) Math.ceil(this.total * Math.min(Math.max(percentile, 0), 100) / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += this.counts[i];
+            if (seen >= rank && seen > 0) {
+                return (long) (i + 1) * BUCKET_MSEC;
+            }
+        }
+        return -1;
+    }
+
+    public long getTotal() {
+        return this.total;
+    }
+
+    public int getSearches() {
+        return this.searches;
+    }
+
+    /**
+     * Writes the histogram, sparse: only non empty buckets
+     */
+    void write(final DataOutputStream out) throws IOException {
+        out.writeInt(this.searches);
+        int used = 0;
+        for (long count : this.counts) {
+            used += (count > 0) ? 1 : 0;
+        }
+        out.writeInt(used);
+        for (int i = 0; i < this.counts.length; i++) {
+            if (this.counts[i] > 0) {
+                out.writeShort(i);
+                out.writeLong(this.counts[i]);
+            }
+        }
+    }
+
+    /**
+     * Reads a histogram written by write()
+     */
+    static ResponseTimeHistogram read(final DataInputStream in) throws IOException {
+        ResponseTimeHistogram histogram = new ResponseTimeHistogram();
+        histogram.searches = in.readInt();
+        int used = in.readInt();
+        for (int i = 0; i < used; i++) {
+            int bucket = in.readShort();
+            long count = in.readLong();
+            if (bucket < 0 || bucket > BUCKETS || count < 0) {
+                throw new IOException("Corrupted histogram");
+            }
+            histogram.counts[bucket] = count;
+            histogram.total += count;
+        }
+        return histogram;
+    }
+}
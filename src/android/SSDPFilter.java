@@ -0,0 +1,247 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.cordova.usb.tethered.discovery;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Response filter evaluated against the raw datagram bytes and the source
+ * address, before the payload is copied, decoded or parsed. Rejected
+ * responses never reach the parse stage.
+ *
+ * All criteria must match. Prefixes are compared case insensitive (ASCII),
+ * regular expressions are searched (find) within the header value.
+ */
+class SSDPFilter {
+
+    private final static byte[] ST = { 'S', 'T' };
+
+    private final static byte[] USN = { 'U', 'S', 'N' };
+
+    private final static byte[] SERVER = { 'S', 'E', 'R', 'V', 'E', 'R' };
+
+    private byte[] stPrefix = null;
+
+    private Pattern stRegex = null;
+
+    private byte[] usnPrefix = null;
+
+    private Pattern usnRegex = null;
+
+    private byte[] serverPrefix = null;
+
+    private Pattern serverRegex = null;
+
+    private int network = 0;
+
+    private int netmask = 0;
+
+    private boolean subnet = false;
+
+    /**
+     * Canonical form of the criteria, identifies identical filters
+     */
+    private String key = "";
+
+    /**
+     * Builds the filter from the JS filter object, sample:
+     * {'stPrefix': 'urn:schemas-upnp-org:device:',
+     *  'serverRegex': 'Embedded.*Server',
+     *  'subnet': '192.168.42.0/24'}
+     * usnPrefix, usnRegex, stRegex and serverPrefix are also accepted.
+     *
+     * @param json
+     *            filter object, may be null
+     * @return SSDPFilter filter or null when there's nothing to filter
+     * @throws JSONException
+     *             invalid regular expression or subnet
+     */
+    public static SSDPFilter fromJSON(final JSONObject json) throws JSONException {
+        if (json == null || json.length() == 0) {
+            return null;
+        }
+        SSDPFilter filter = new SSDPFilter();
+        filter.stPrefix = prefix(json, "stPrefix");
+        filter.stRegex = regex(json, "stRegex");
+        filter.usnPrefix = prefix(json, "usnPrefix");
+        filter.usnRegex = regex(json, "usnRegex");
+        filter.serverPrefix = prefix(json, "serverPrefix");
+        filter.serverRegex = regex(json, "serverRegex");
+        String cidr = json.optString("subnet");
+        if (cidr.length() > 0) {
+            filter.setSubnet(cidr);
+        }
+        StringBuilder key = new StringBuilder();
+        for (String criteria : new String[] { "stPrefix", "stRegex", "usnPrefix", "usnRegex", "serverPrefix", "serverRegex", "subnet" }) {
+            key.append(json.optString(criteria)).append('\n');
+        }
+        filter.key = key.toString();
+        return filter;
+    }
+
+    /**
+     * @return String canonical form of the criteria, equal for identical
+     *         filters
+     */
+    public String getKey() {
+        return this.key;
+    }
+
+    private static byte[] prefix(final JSONObject json, final String key) {
+        String value = json.optString(key);
+        return value.length() > 0 ? value.getBytes(SSDPPacket.CHARSET) : null;
+    }
+
+    private static Pattern regex(final JSONObject json, final String key) throws JSONException {
+        String value = json.optString(key);
+        if (value.length() == 0) {
+            return null;
+        }
+        try {
+            return Pattern.compile(value);
+        } catch (PatternSyntaxException e) {
+            throw new JSONException("Invalid " + key + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @param cidr
+     *            IPv4 subnet in CIDR notation, i.e 192.168.42.0/24
+     * @throws JSONException
+     *             not an IPv4 CIDR
+     */
+    private void setSubnet(final String cidr) throws JSONException {
+        String[] parts = cidr.split("/", -1);
+        // IP literals only, InetAddress.getByName turns a blank address into
+        // loopback and a host name into a DNS lookup
+        if (parts.length > 2 || !PluginUtils.isIpv4Literal(parts[0])) {
+            throw new JSONException("Invalid subnet: " + cidr);
+        }
+        try {
+            int bits = (parts.length > 1) ? Integer.parseInt(parts[1]) : 32;
+            InetAddress address = InetAddress.getByName(parts[0]);
+            if (!(address instanceof Inet4Address) || bits < 0 || bits > 32) {
+                throw new JSONException("Invalid subnet: " + cidr);
+            }
+            this.netmask = (bits == 0) ? 0 : -1 << (32 - bits);
+            this.network = toInt(address.getAddress()) & this.netmask;
+            this.subnet = true;
+        } catch (NumberFormatException e) {
+            throw new JSONException("Invalid subnet: " + cidr);
+        } catch (UnknownHostException e) {
+            throw new JSONException("Invalid subnet: " + cidr);
+        }
+    }
+
+    private static int toInt(final byte[] addr) {
+        return ((addr[0] & 0xff) << 24) | ((addr[1] & 0xff) << 16) | ((addr[2] & 0xff) << 8) | (addr[3] & 0xff);
+    }
+
+    /**
+     * Checks a received datagram, cheapest criteria first
+     *
+     * @param data
+     *            receive buffer
+     * @param length
+     *            number of valid bytes on data
+     * @param address
+     *            source address
+     * @return boolean true if the response must go through the pipeline
+     */
+    public boolean accepts(final byte[] data, final int length, final InetAddress address) {
+        if (this.subnet) {
+            if (!(address instanceof Inet4Address) || (toInt(address.getAddress()) & this.netmask) != this.network) {
+                return false;
+            }
+        }
+        return matches(data, length, ST, this.stPrefix, this.stRegex) && matches(data, length, USN, this.usnPrefix, this.usnRegex)
+                && matches(data, length, SERVER, this.serverPrefix, this.serverRegex);
+    }
+
+    private static boolean matches(final byte[] data, final int length, final byte[] header, final byte[] prefix, final Pattern regex) {
+        if (prefix == null && regex == null) {
+            return true;
+        }
+        int start = findValue(data, length, header);
+        if (start < 0) {
+            return false;
+        }
+        int end = start;
+        while (end < length && data[end] != '\r' && data[end] != '\n') {
+            end++;
+        }
+        if (prefix != null && !startsWith(data, start, end, prefix)) {
+            return false;
+        }
+        // only the header value gets decoded, and only for regex criteria
+        return regex == null || regex.matcher(new String(data, start, end - start, SSDPPacket.CHARSET)).find();
+    }
+
+    /**
+     * Finds a header line and returns where its value starts
+     *
+     * @return int offset of the first value byte or -1 if not present
+     */
+    private static int findValue(final byte[] data, final int length, final byte[] header) {
+        int line = 0;
+        while (line < length) {
+            int colon = line + header.length;
+            if (colon < length && data[colon] == ':' && startsWith(data, line, colon, header)) {
+                int start = colon + 1;
+                while (start < length && data[start] == ' ') {
+                    start++;
+                }
+                return start;
+            }
+            while (line < length && data[line] != '\n') {
+                line++;
+            }
+            line++;
+        }
+        return -1;
+    }
+
+    /**
+     * ASCII case insensitive prefix comparison
+     */
+    private static boolean startsWith(final byte[] data, final int start, final int end, final byte[] prefix) {
+        if (end - start < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (lower(data[start + i]) != lower(prefix[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte lower(final byte b) {
+        return (b >= 'A' && b <= 'Z') ? (byte) (b + 32) : b;
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.cordova.usb.tethered.discovery;
+
+import java.net.InetAddress;
+import java.nio.charset.Charset;
+
+/**
+ * Raw SSDP datagram as it came out of the socket, handed from the receive
+ * stage to the parse stage without being decoded
+ */
+class SSDPPacket {
+
+    /**
+     * SSDP is plain HTTP over UDP, headers are ASCII/UTF-8
+     */
+    final static Charset CHARSET = Charset.forName("UTF-8");
+
+    private final byte[] data;
+
+    private final int length;
+
+    private final InetAddress address;
+
+    private final long timestamp;
+
+    /**
+     * Constructor
+     *
+     * @param data
+     *            datagram payload, owned by this packet from now on
+     * @param length
+     *            number of valid bytes on data
+     * @param address
+     *            source address of the datagram
+     * @param timestamp
+     *            monotonic receive time in nanoseconds (System.nanoTime)
+     */
+    public SSDPPacket(final byte[] data, final int length, final InetAddress address, final long timestamp) {
+        this.data = data;
+        this.length = length;
+        this.address = address;
+        this.timestamp = timestamp;
+    }
+
+    public byte[] getData() {
+        return this.data;
+    }
+
+    public int getLength() {
+        return this.length;
+    }
+
+    public InetAddress getAddress() {
+        return this.address;
+    }
+
+    public long getTimestamp() {
+        return this.timestamp;
+    }
+
+    /**
+     * Decodes the datagram payload
+     *
+     * @return String containing the translated body
+     */
+    public String getPayload() {
+        return new String(this.data, 0, this.length, CHARSET).trim();
+    }
+
+    @Override
+    public String toString() {
+        return "SSDPPacket [address=" + this.address + ", length=" + this.length + ", timestamp=" + this.timestamp + "]";
+    }
+}
@@ -28,12 +28,17 @@ import java.util.HashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.json.JSONException;
+import org.json.JSONObject;
+
 class SSDPParser implements Serializable {
 
     final static long serialVersionUID = 1L;
 
     final static Pattern SSDP_RESPONSE = Pattern.compile("(.+?): (.+)");
 
+    final static Pattern MAX_AGE = Pattern.compile("max-age\\s*=\\s*(\\d+)", Pattern.CASE_INSENSITIVE);
+
     private String usn = "";
 
     private String uuid = "";
@@ -44,6 +49,12 @@ class SSDPParser implements Serializable {
 
     private String ipAddress = "";
 
+    private String bootId = "";
+
+    private String configId = "";
+
+    private int maxAge = -1;
+
     public SSDPParser(final String payload) throws SSDPParserException {
         if (payload.length() == 0) {
             throw new SSDPParserException("Invalid UPnP payload");
@@ -75,6 +86,19 @@ class SSDPParser implements Serializable {
             String[] usn = search.get("usn").split(":");
             this.setUUID(usn[1]);
         }
+        // UPnP 1.1 only, absent on 1.0 devices
+        this.setBootId((search.get("bootid.upnp.org") != null) ? search.get("bootid.upnp.org").trim() : "");
+        this.setConfigId((search.get("configid.upnp.org") != null) ? search.get("configid.upnp.org").trim() : "");
+        if (search.get("cache-control") != null) {
+            Matcher maxAge = MAX_AGE.matcher(search.get("cache-control"));
+            if (maxAge.find()) {
+                try {
+                    this.setMaxAge(Integer.parseInt(maxAge.group(1)));
+                } catch (NumberFormatException e) {
+                    this.setMaxAge(-1);
+                }
+            }
+        }
     }
 
     public String getServer() {
@@ -117,9 +141,74 @@ class SSDPParser implements Serializable {
         this.uuid = uuid;
     }
 
+    /**
+     * @return String BOOTID.UPNP.ORG, increased by the device on every boot
+     */
+    public String getBootId() {
+        return this.bootId;
+    }
+
+    public void setBootId(final String bootId) {
+        this.bootId = bootId;
+    }
+
+    /**
+     * @return String CONFIGID.UPNP.ORG, changes with the device description
+     */
+    public String getConfigId() {
+        return this.configId;
+    }
+
+    public void setConfigId(final String configId) {
+        this.configId = configId;
+    }
+
+    /**
+     * @return int CACHE-CONTROL max-age in seconds, -1 if not present
+     */
+    public int getMaxAge() {
+        return this.maxAge;
+    }
+
+    public void setMaxAge(final int maxAge) {
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Tells whether a newer response of the same USN describes a different
+     * device instance: rebooted, reconfigured or moved
+     *
+     * @param other
+     *            newer response of the same USN
+     * @return boolean true if BOOTID, CONFIGID, LOCATION or address differ
+     */
+    public boolean isChanged(final SSDPParser other) {
+        return !this.bootId.equals(other.bootId) || !this.configId.equals(other.configId) || !this.location.equals(other.location)
+                || !this.ipAddress.equals(other.ipAddress);
+    }
+
+    /**
+     * @return JSONObject data format sent to the app
+     * @throws JSONException
+     *             serialization error
+     */
+    public JSONObject toJSON() throws JSONException {
+        JSONObject ssObj = new JSONObject();
+        ssObj.put("ipAddress", this.ipAddress);
+        ssObj.put("server", this.server);
+        ssObj.put("location", this.location);
+        ssObj.put("usn", this.usn);
+        ssObj.put("uuid", this.uuid);
+        ssObj.put("bootId", this.bootId);
+        ssObj.put("configId", this.configId);
+        ssObj.put("maxAge", this.maxAge);
+        return ssObj;
+    }
+
     @Override
     public String toString() {
-        return "SSDPParser [server=" + this.server + ", location=" + this.location + ", usn=" + this.usn + ", uuid=" + this.uuid + "]";
+        return "SSDPParser [server=" + this.server + ", location=" + this.location + ", usn=" + this.usn + ", uuid=" + this.uuid
+                + ", bootId=" + this.bootId + ", configId=" + this.configId + ", maxAge=" + this.maxAge + "]";
     }
 
 }
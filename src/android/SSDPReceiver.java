@@ -0,0 +1,113 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.cordova.usb.tethered.discovery;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+
+/**
+ * Receive stage of the discovery pipeline, drains the socket as fast as it
+ * can into a PacketQueue so parsing never holds the kernel buffer back
+ */
+class SSDPReceiver implements Runnable {
+
+    /**
+     * Logging TAG
+     */
+    private static final String TAG = "SSDPReceiver";
+
+    private final PacketSource source;
+
+    private final PacketQueue queue;
+
+    private final SSDPFilter filter;
+
+    /**
+     * Receive buffer of this receiver, only the received bytes are copied out
+     */
+    private final byte[] buff = new byte[1024];
+
+    /**
+     * Reusable datagram bound to buff
+     */
+    private final DatagramPacket pkg = new DatagramPacket(this.buff, this.buff.length);
+
+    /**
+     * Wall clock time (MSEC) when the receiving stops
+     */
+    private final long deadline;
+
+    private volatile boolean running = true;
+
+    private volatile IOException error = null;
+
+    /**
+     * Constructor
+     *
+     * @param source
+     *            already teared up connector or a replay
+     * @param queue
+     *            hand-off queue to the parse stage, closed when done
+     * @param filter
+     *            response filter applied on the raw datagram, may be null
+     * @param deadline
+     *            wall clock time (MSEC) when the receiving stops
+     */
+    public SSDPReceiver(final PacketSource source, final PacketQueue queue, final SSDPFilter filter, final long deadline) {
+        this.source = source;
+        this.queue = queue;
+        this.filter = filter;
+        this.deadline = deadline;
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (this.running && this.source.isOpen() && System.currentTimeMillis() <= this.deadline) {
+                SSDPPacket packet = this.source.receive(this.pkg, this.filter);
+                if (packet != null && !this.queue.offer(packet)) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            this.error = e;
+        } finally {
+            this.queue.close();
+            if (this.queue.getDropped() > 0) {
+                Log.v(TAG, "Packets dropped by back-pressure: " + this.queue.getDropped());
+            }
+        }
+    }
+
+    /**
+     * Asks the receive loop to finish after the current socket read
+     */
+    public void stop() {
+        this.running = false;
+    }
+
+    /**
+     * @return IOException error which stopped the receive stage, if any
+     */
+    public IOException getError() {
+        return this.error;
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.cordova.usb.tethered.discovery;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONObject;
+
+/**
+ * Coalesces identical concurrent searches: the first caller runs the search,
+ * callers arriving while it is in flight are attached to it and get the same
+ * result through their own sink
+ */
+class SearchCoalescer {
+
+    /**
+     * Logging TAG
+     */
+    private static final String TAG = "SearchCoalescer";
+
+    /**
+     * In flight searches by key, with the sinks waiting for them
+     */
+    private final Map<String, List<ResultSink>> searches = new HashMap<>();
+
+    /**
+     * Attaches a caller to the search identified by key
+     *
+     * @param key
+     *            search identity, see DiscoveryOptions.getKey
+     * @param sink
+     *            where this caller wants the result
+     * @return ResultSink to run the search with, null if an identical search
+     *         is already in flight and the caller was attached to it
+     */
+    public synchronized ResultSink join(final String key, final ResultSink sink) {
+        List<ResultSink> waiting = this.searches.get(key);
+        if (waiting != null) {
+            waiting.add(sink);
+            Log.v(TAG, "Attached to in flight search (" + waiting.size() + " callers): " + key);
+            return null;
+        }
+        waiting = new ArrayList<>();
+        waiting.add(sink);
+        this.searches.put(key, waiting);
+        return new Shared(key);
+    }
+
+    /**
+     * Detaches every caller of a search, the search is no longer in flight
+     */
+    private synchronized List<ResultSink> finish(final String key) {
+        List<ResultSink> waiting = this.searches.remove(key);
+        return (waiting != null) ? waiting : new ArrayList<ResultSink>();
+    }
+
+    /**
+     * Sink of the search, fans the result out to every attached caller
+     */
+    private class Shared implements ResultSink {
+
+        private final String key;
+
+        Shared(final String key) {
+            this.key = key;
+        }
+
+        @Override
+        public void send(final boolean status, final JSONObject response) {
+            for (ResultSink sink : finish(this.key)) {
+                sink.send(status, response);
+            }
+        }
+
+        @Override
+        public void close(final String message) {
+            for (ResultSink sink : finish(this.key)) {
+                sink.close(message);
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.cordova.usb.tethered.discovery;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Learns how fast devices answer on each interface and shortens the search
+ * window accordingly. Histograms are persisted so the learning survives app
+ * restarts.
+ */
+class SearchWindowEstimator {
+
+    /**
+     * Logging TAG
+     */
+    private static final String TAG = "SearchWindowEstimator";
+
+    /**
+     * Persisted file format version
+     */
+    private final static int FILE_VERSION = 1;
+
+    /**
+     * Samples needed before the window is adapted
+     */
+    final static long MIN_SAMPLES = 20;
+
+    /**
+     * Every Nth search runs the full window, otherwise late responders would
+     * never be observed and the window could only shrink
+     */
+    final static int FULL_SEARCH_INTERVAL = 10;
+
+    private final Map<String, ResponseTimeHistogram> histograms = new HashMap<>();
+
+    private final File file;
+
+    /**
+     * Constructor, loads previous histograms if any
+     *
+     * @param file
+     *            where histograms are persisted
+     */
+    public SearchWindowEstimator(final File file) {
+        this.file = file;
+        load();
+    }
+
+    /**
+     * Computes how long a search should listen for responses
+     *
+     * @param netIf
+     *            interface name used for the search
+     * @param mx
+     *            maximum wait time in seconds, the window never goes beyond
+     * @param percentile
+     *            response latency percentile to wait for, between 0 and 100
+     * @param margin
+     *            MSEC added to the percentile
+     * @return long window in MSEC, -1 when there's not enough data to adapt
+     */
+    public synchronized long getWindow(final String netIf, final int mx, final double percentile, final long margin) {
+        ResponseTimeHistogram histogram = this.histograms.get(netIf);
+        if (histogram == null || histogram.getTotal() < MIN_SAMPLES || histogram.getSearches() % FULL_SEARCH_INTERVAL == 0) {
+            return -1;
+        }
+        long latency = histogram.getPercentile(percentile);
+        if (latency < 0) {
+            return -1;
+        }
+        return Math.min(latency + margin, mx * 1000L);
+    }
+
+    /**
+     * Records the response latencies of a finished search and persists them
+     *
+     * @param netIf
+     *            interface name used for the search
+     * @param latencies
+     *            response latencies in MSEC
+     * @param count
+     *            number of valid entries on latencies
+     */
+    public synchronized void record(final String netIf, final long[] latencies, final int count) {
+        ResponseTimeHistogram histogram = this.histograms.get(netIf);
+        if (histogram == null) {
+            histogram = new ResponseTimeHistogram();
+            this.histograms.put(netIf, histogram);
+        }
+        for (int i = 0; i < count; i++) {
+            histogram.record(latencies[i]);
+        }
+        histogram.searchDone();
+        save();
+    }
+
+    private void load() {
+        if (!this.file.exists()) {
+            return;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.file)));
+            if (in.readInt() != FILE_VERSION) {
+                Log.v(TAG, "Unknown histogram file version, ignored");
+                return;
+            }
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                String netIf = in.readUTF();
+                this.histograms.put(netIf, ResponseTimeHistogram.read(in));
+            }
+        } catch (IOException e) {
+            this.histograms.clear();
+            Log.v(TAG, "Error loading histograms, starting over: " + e.getMessage());
+        } finally {
+            close(in);
+        }
+    }
+
+    private void save() {
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.file)));
+            out.writeInt(FILE_VERSION);
+            out.writeInt(this.histograms.size());
+            for (Map.Entry<String, ResponseTimeHistogram> entry : this.histograms.entrySet()) {
+                out.writeUTF(entry.getKey());
+                entry.getValue().write(out);
+            }
+        } catch (IOException e) {
+            Log.v(TAG, "Error saving histograms: " + e.getMessage());
+        } finally {
+            close(out);
+        }
+    }
+
+    private static void close(final Closeable stream) {
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                Log.v(TAG, "Error closing histogram file, supressed.");
+            }
+        }
+    }
+}
@@ -20,17 +20,16 @@
 
 package org.apache.cordova.usb.tethered.discovery;
 
-import java.io.IOException;
-
 import org.apache.cordova.CallbackContext;
 import org.apache.cordova.CordovaInterface;
 import org.apache.cordova.CordovaPlugin;
 import org.apache.cordova.CordovaWebView;
-import org.apache.cordova.PluginResult;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import android.Manifest;
+
 public class UsbDiscovery extends CordovaPlugin {
 
     /**
@@ -48,6 +47,11 @@ public class UsbDiscovery extends CordovaPlugin {
      */
     private final static String INTERNET_PERMISSION = Manifest.permission.INTERNET;
 
+    /**
+     * Platform neutral discovery engine
+     */
+    private DiscoveryEngine engine = null;
+
     /**
      * SSDP USB Multicast connector implementation
      */
@@ -55,13 +59,15 @@ public class UsbDiscovery extends CordovaPlugin {
 
     @Override
     public void initialize(final CordovaInterface cordova, final CordovaWebView webView) {
-        this.connector = new UsbMulticast(cordova);
+        Log.setLogger(new AndroidLogger());
+        this.engine = new DiscoveryEngine(new AndroidUsbState(cordova), cordova.getThreadPool(), cordova.getActivity().getFilesDir());
+        this.connector = this.engine.getConnector();
         Log.v(TAG, "Registered!");
     }
 
     @Override
     public void onDestroy() {
-        this.connector.tearDown();
+        this.engine.shutdown();
         super.onDestroy();
     }
 
@@ -85,37 +91,78 @@ public class UsbDiscovery extends CordovaPlugin {
     public boolean execute(final String action, final JSONArray args, final CallbackContext callbackContext) throws JSONException {
         String msg;
         boolean status;
+        final ResultSink sink = new CordovaResultSink(callbackContext);
         // Not sure if this block should be here, will check later
         // NOTE: this block is necessary to request permission on Android 6+
         if (!PermissionHelper.hasPermission(this, INTERNET_PERMISSION)) {
             PermissionHelper.requestPermission(this, MULTICAST_SOCKET, INTERNET_PERMISSION);
         }
         if (action.equals("discovery")) {
-            final String st = args.optString(0);
-            final double ver = Double.parseDouble(args.optString(1));
-            final int mx = args.getInt(2);
+            final DiscoveryOptions options = DiscoveryOptions.fromArgs(args);
             // Run on cordova thread pool
             // Regular calls blocks the main thread
             this.cordova.getThreadPool().execute(new Runnable() {
 
                 @Override
                 public void run() {
-                    discovery(st, ver, mx, callbackContext);
+                    engine.discovery(options, sink);
+                }
+            });
+        } else if (action.equals("replay")) {
+            final String file = args.optString(0);
+            final boolean realtime = args.optBoolean(1, false);
+            final DiscoveryOptions options = DiscoveryOptions.forReplay(args);
+            this.cordova.getThreadPool().execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    engine.replay(file, realtime, options, sink);
+                }
+            });
+        } else if (action.equals("revalidate")) {
+            final JSONArray addresses = args.optJSONArray(0);
+            final String st = args.optString(1, PluginUtils.UPNP_ROOT_DEVICE);
+            final int timeout = args.optInt(2, PluginUtils.DEFAULT_REVALIDATE_TIMEOUT);
+            this.cordova.getThreadPool().execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    engine.revalidate(addresses, st, timeout, sink);
+                }
+            });
+        } else if (action.equals("neighbors")) {
+            final boolean probe = args.optBoolean(0, false);
+            final String st = args.optString(1, PluginUtils.UPNP_ROOT_DEVICE);
+            final int timeout = args.optInt(2, PluginUtils.DEFAULT_REVALIDATE_TIMEOUT);
+            this.cordova.getThreadPool().execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    engine.neighbors(probe, st, timeout, sink);
                 }
             });
+        } else if (action.equals("startMonitor")) {
+            JSONObject options = args.optJSONObject(0);
+            if (options == null) {
+                options = new JSONObject();
+            }
+            this.engine.startMonitor(options, sink);
+        } else if (action.equals("stopMonitor")) {
+            this.engine.stopMonitor();
+            return DiscoveryEngine.buildStatusMessage(true, PluginUtils.MONITOR_STOPPED, sink);
         } else if (action.equals("isUsbConnected")) {
             status = (this.connector.isUsbAttached()) ? true : false;
             msg = status ? PluginUtils.USB_CONNECTED : PluginUtils.USB_CABLE_NOT_CONNECTED;
-            return buildStatusMessage(status, msg, callbackContext);
+            return DiscoveryEngine.buildStatusMessage(status, msg, sink);
         } else if (action.equals("isConnectionTethered")) {
             status = (this.connector.isConnected()) ? true : false;
             msg = status ? PluginUtils.CONNECTION_TETHERED : PluginUtils.CONNECTION_NOT_TETHERED;
-            return buildStatusMessage(status, msg, callbackContext);
+            return DiscoveryEngine.buildStatusMessage(status, msg, sink);
         } else if (action.equals("isDeviceReady")) {
             boolean usb = this.connector.isUsbAttached();
             status = (usb && this.connector.isConnected()) ? true : false;
             msg = status ? PluginUtils.DEVICE_IS_READY : (usb) ? PluginUtils.CONFIGURATION_NOT_FINISHED_NETWORK : PluginUtils.CONFIGURATION_NOT_FINISHED_USB;
-            return buildStatusMessage(status, msg, callbackContext);
+            return DiscoveryEngine.buildStatusMessage(status, msg, sink);
         } else {
             // Unhandled call
             return false;
@@ -124,129 +171,4 @@ public class UsbDiscovery extends CordovaPlugin {
         return true;
     }
 
-    /**
-     * Perform the discovery and builds the response to send cordova the results
-     *
-     * @param st What exactly is expected to be searched over the network
-     * @param version UPnP version
-     * @param mx maximum wait time, each UPnP version has its own treshold
-     */
-    private void discovery(final String st, final double version, final int mx, final CallbackContext callbackContext) {
-        JSONArray ssdpList = new JSONArray();
-        // Current time + mx (max wait time) + 2 seconds * MSEC
-        final long loopTime = System.currentTimeMillis() + ((mx + 2) * 1000);
-        try {
-            this.connector.tearUp();
-            this.connector.send(st, version, mx);
-            while (System.currentTimeMillis() <= loopTime) {
-                String response = this.connector.recv();
-                JSONObject ssObj = jsonifyMessage(response);
-                if (ssObj.length() > 0) {
-                    ssdpList.put(ssObj);
-                }
-            }
-
-            if (ssdpList.length() > 0) {
-                buildStatusMessage(true, ssdpList, callbackContext);
-            } else {
-                buildStatusMessage(false, PluginUtils.NO_RESULTS, callbackContext);
-            }
-        } catch (IOException e) {
-            // any error which happens while tearing up, sending or receiving will be
-            // handled by this exception.
-            buildStatusMessage(false, e.getMessage(), callbackContext);
-        }
-        // Errors while closing the socket is already handled by the
-        // connector itself
-        this.connector.tearDown();
-    }
-
-    /**
-     * Builds complaint data format message
-     *
-     * @param status
-     *            message status representation
-     * @param message
-     *            String containg extended status
-     *
-     * @return boolean always true, representation of a registered plugin method
-     */
-    private static boolean buildStatusMessage(final boolean status, final String message, final CallbackContext callbackContext) {
-        JSONObject response = new JSONObject();
-        try {
-            response.put("status", status);
-            response.put("message", message);
-        } catch (JSONException e) {
-            Log.v(TAG, "Error on plugin serialization: " + e.getMessage());
-        }
-        sendResult(status, response, callbackContext);
-        // Returns execute method result (plugin call)
-        return true;
-    }
-
-    /**
-     * Builds complaint data format message
-     *
-     * @param status
-     *            message status representation
-     * @param data
-     *            Json array contaning parsed response(s)
-     */
-    private static void buildStatusMessage(final boolean status, final JSONArray data, final CallbackContext callbackContext) {
-        JSONObject response = new JSONObject();
-        try {
-            response.put("status", status);
-            response.put("data", data);
-            response.put("message", PluginUtils.NETWORK_DISCOVERY_SUCCESS);
-        } catch (JSONException e) {
-            Log.v(TAG, "Error on plugin serialization: " + e.getMessage());
-        }
-        sendResult(status, response, callbackContext);
-    }
-
-    /**
-     * Sends plugin result
-     *
-     * @param status
-     *            message status representation
-     * @param response
-     *            Json object contaning response
-     */
-    private static void sendResult(final boolean status, final JSONObject response, final CallbackContext callbackContext) {
-        PluginResult result;
-        if (status) {
-            result = new PluginResult(PluginResult.Status.OK, response);
-        } else {
-            result = new PluginResult(PluginResult.Status.ERROR, response);
-        }
-        result.setKeepCallback(true);
-        callbackContext.sendPluginResult(result);
-    }
-
-    /**
-     * Converts String response data to JSON object
-     *
-     * @param message
-     *            socket response raw data
-     *
-     * @return JSONObject parsed ssdp data
-     */
-    private static JSONObject jsonifyMessage(final String message) {
-        JSONObject ssObj = new JSONObject();
-        try {
-            SSDPParser ss = new SSDPParser(message);
-            ssObj.put("ipAddress", ss.getIpAddress());
-            ssObj.put("server", ss.getServer());
-            ssObj.put("location", ss.getLocation());
-            ssObj.put("usn", ss.getUsn());
-            ssObj.put("uuid", ss.getUUID());
-        } catch (JSONException e) {
-            Log.v(TAG, "Invalid payload for SSDP: " + e.getMessage());
-        } catch (SSDPParserException e1) {
-            Log.v(TAG, "Invalid payload for SSDP: " + e1.getMessage());
-        }
-
-        return ssObj;
-    }
-
 }
@@ -24,18 +24,15 @@ import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.Inet4Address;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.MulticastSocket;
 import java.net.NetworkInterface;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
+import java.util.Arrays;
 import java.util.Collections;
 
-import org.apache.cordova.CordovaInterface;
-
-import android.content.Intent;
-import android.content.IntentFilter;
-
-public class UsbMulticast {
+public class UsbMulticast implements PacketSource {
 
     /**
      * Logging TAG
@@ -43,9 +40,16 @@ public class UsbMulticast {
     private static final String TAG = "UsbMulticast";
 
     /**
-     * Multicast Socket, force socket to NOT bind
+     * Multicast Socket of this transport, force socket to NOT bind. Each
+     * search or revalidation tears up a transport of its own, so concurrent
+     * calls never share a socket
      */
-    private static MulticastSocket conn = null;
+    private volatile MulticastSocket conn = null;
+
+    /**
+     * Name of the interface the socket was teared up on
+     */
+    private String interfaceName = null;
 
     /**
      * socket timeout
@@ -53,15 +57,20 @@ public class UsbMulticast {
     private int socketTimeout = 1;
 
     /**
-     * Cordova interface to device
+     * Raw capture of every received datagram, if enabled
      */
-    private CordovaInterface cordova;
+    private volatile PacketCapture.Session capture = null;
+
+    /**
+     * Platform USB cable state
+     */
+    private final UsbState usbState;
 
     /**
      * Constructor
      */
-    public UsbMulticast(final CordovaInterface cordova) {
-        this.cordova = cordova;
+    public UsbMulticast(final UsbState usbState) {
+        this.usbState = usbState;
     }
 
     /**
@@ -71,8 +80,7 @@ public class UsbMulticast {
      *         working/attached
      */
     public boolean isUsbAttached() {
-        Intent intent = this.cordova.getActivity().registerReceiver(null, new IntentFilter(PluginUtils.USB_STATE));
-        return intent.getExtras().getBoolean(PluginUtils.USB_CABLE_CONNECTED);
+        return this.usbState.isUsbAttached();
     }
 
     /**
@@ -131,32 +139,97 @@ public class UsbMulticast {
     public void send(final String st, final double version, final int mx) throws IOException {
         String msg = PluginUtils.buildMSearch(st, version, mx);
         byte[] data = msg.getBytes();
-        conn.send(new DatagramPacket(data, data.length, PluginUtils.GROUP));
+        getSocket().send(new DatagramPacket(data, data.length, PluginUtils.GROUP));
         Log.v(TAG, "Multicast sent!: " + msg);
     }
 
     /**
-     * Receive unicast packages responses only, this is not made to receive
-     * multicast data
+     * Send an unicast M-SEARCH straight to a device (UPnP 1.1), the answer is
+     * received as any other response
+     *
+     * @param st
+     *            What exactly is expected to be searched over the network
+     * @param address
+     *            device address
+     * @throws IOException
+     *             - Underling socket error
+     */
+    public void sendTo(final String st, final InetAddress address) throws IOException {
+        String msg = PluginUtils.buildUnicastMSearch(st, address.getHostAddress());
+        byte[] data = msg.getBytes();
+        getSocket().send(new DatagramPacket(data, data.length, new InetSocketAddress(address, PluginUtils.SSDP_PORT)));
+        Log.v(TAG, "Unicast sent!: " + address.getHostAddress());
+    }
+
+    /**
+     * Receive unicast packages responses only, datagrams rejected by the
+     * filter are discarded straight from the receive buffer, without being
+     * copied
      *
-     * @return String contaning translated body
+     * @param pkg
+     *            receive datagram owned by the calling receiver, only the
+     *            received bytes are copied out of it
+     * @param filter
+     *            response filter, null accepts everything
+     * @return SSDPPacket contaning the raw datagram, null on socket timeout
+     *         or if the filter rejected it
      * @throws IOException
      *             - Underling socket error
      */
-    public String recv() throws IOException {
-        byte[] buff = new byte[1024];
-        DatagramPacket pkg = new DatagramPacket(buff, buff.length);
+    @Override
+    public SSDPPacket receive(final DatagramPacket pkg, final SSDPFilter filter) throws IOException {
+        MulticastSocket conn = this.conn;
+        if (conn == null) {
+            return null;
+        }
+        pkg.setLength(pkg.getData().length);
 
         try {
             conn.receive(pkg);
         } catch (SocketTimeoutException e) {
-            Log.v(TAG, "Socket timeout");
+            return null;
         } catch (SocketException e) {
             tearDown();
             throw new IOException(PluginUtils.USB_CABLE_DISCONNECTED);
         }
 
-        return new String(pkg.getData()).trim();
+        long timestamp = System.nanoTime();
+        PacketCapture.Session capture = this.capture;
+        if (capture != null) {
+            capture.write(pkg.getData(), pkg.getLength(), pkg.getAddress(), timestamp);
+        }
+        if (filter != null && !filter.accepts(pkg.getData(), pkg.getLength(), pkg.getAddress())) {
+            return null;
+        }
+        return new SSDPPacket(Arrays.copyOf(pkg.getData(), pkg.getLength()), pkg.getLength(), pkg.getAddress(), timestamp);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return this.conn != null;
+    }
+
+    /**
+     * @return MulticastSocket the teared up socket
+     * @throws IOException
+     *             - tearUp was not called or the socket is already closed
+     */
+    private MulticastSocket getSocket() throws IOException {
+        MulticastSocket conn = this.conn;
+        if (conn == null) {
+            throw new IOException(PluginUtils.USB_CABLE_DISCONNECTED);
+        }
+        return conn;
+    }
+
+    /**
+     * Captures every received datagram, before filtering
+     *
+     * @param capture
+     *            capture session to record on, null stops capturing
+     */
+    public void setCapture(final PacketCapture.Session capture) {
+        this.capture = capture;
     }
 
     /**
@@ -167,16 +240,50 @@ public class UsbMulticast {
      *             - Underling socket error
      */
     public void tearUp() throws IOException {
-        conn = new MulticastSocket(null);
+        tearUp(0);
+    }
+
+    /**
+     * Creates multicast socket with a tuned kernel receive buffer, a bigger
+     * SO_RCVBUF absorbs response bursts while the parse stage catches up
+     *
+     * @param receiveBufferSize
+     *            SO_RCVBUF in bytes, 0 keeps the system default, the kernel
+     *            may cap it
+     * @throws IOException
+     *             - Underling socket error
+     */
+    public synchronized void tearUp(final int receiveBufferSize) throws IOException {
+        tearDown();
         NetworkInterface netIf = getInterface();
-        conn.setReuseAddress(true);
-        conn.setNetworkInterface(netIf);
-        conn.setTimeToLive(PluginUtils.TTL);
-        conn.setSoTimeout(this.socketTimeout);
-        conn.joinGroup(PluginUtils.GROUP, netIf);
+        MulticastSocket conn = new MulticastSocket(null);
+        try {
+            if (receiveBufferSize > 0) {
+                conn.setReceiveBufferSize(receiveBufferSize);
+                Log.v(TAG, "SO_RCVBUF: " + conn.getReceiveBufferSize());
+            }
+            conn.setReuseAddress(true);
+            conn.setNetworkInterface(netIf);
+            conn.setTimeToLive(PluginUtils.TTL);
+            conn.setSoTimeout(this.socketTimeout);
+            conn.joinGroup(PluginUtils.GROUP, netIf);
+        } catch (IOException e) {
+            conn.close();
+            throw e;
+        }
+        this.conn = conn;
+        this.interfaceName = netIf.getName();
         Log.v(TAG, "Joined multicast group successfully");
     }
 
+    /**
+     * @return String name of the interface used by the last tearUp, null
+     *         before that
+     */
+    public String getInterfaceName() {
+        return this.interfaceName;
+    }
+
     /**
      * Closes gracefuly the socket, not closing the socket may affect another
      * networked apps depending on the target SO_MAX_CONN or max socket backlog
@@ -186,18 +293,22 @@ public class UsbMulticast {
      * @throws IOException
      *             - Underling socket error
      */
-    public void tearDown() {
-        if (conn != null && conn.isConnected()) {
+    public synchronized void tearDown() {
+        MulticastSocket conn = this.conn;
+        if (conn != null) {
+            this.conn = null;
             try {
                 conn.leaveGroup(PluginUtils.GROUP, conn.getNetworkInterface());
-                conn.close();
             } catch (IOException e) {
                 Log.v(TAG, "Error dead socket found, supressed.");
             } catch (IllegalArgumentException e) {
                 Log.v(TAG, "Error unexpected life cycle, supressed.");
+            } finally {
+                // the group may be already gone with the interface, the
+                // socket is closed anyway
+                conn.close();
             }
-            conn = null;
+            Log.v(TAG, "Socket closed");
         }
-        Log.v(TAG, "Socket closed");
     }
 }
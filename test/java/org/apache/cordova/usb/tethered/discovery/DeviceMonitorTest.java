@@ -0,0 +1,69 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.cordova.usb.tethered.discovery;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+
+/**
+ * Monitor on a device which never answers (nothing listens on the loopback
+ * SSDP port)
+ */
+class DeviceMonitorTest implements Harness.Suite {
+
+    @Override
+    public void run() throws Exception {
+        DeviceRegistry registry = new DeviceRegistry();
+        final CountDownLatch down = new CountDownLatch(1);
+        // a long maxInterval, the new device must not wait for it
+        DeviceMonitor monitor = new DeviceMonitor(registry, new DeviceMonitor.Listener() {
+
+            @Override
+            public void onTransition(final JSONObject device, final boolean alive) {
+                if (!alive) {
+                    down.countDown();
+                }
+            }
+        }, DeviceMonitor.METHOD_SSDP, PluginUtils.UPNP_ROOT_DEVICE, 100, 60000, 50);
+        monitor.start();
+        Thread.sleep(100);
+        registry.update(new SSDPParser(Harness.response("uuid:a::upnp:rootdevice", "127.0.0.1", PluginUtils.UPNP_ROOT_DEVICE, 1)));
+        Harness.check(down.await(5, TimeUnit.SECONDS), "new device probed right away and reported down");
+        monitor.stop();
+
+        // short maxInterval, a device down for EXPIRY_INTERVALS of it is forgotten
+        monitor = new DeviceMonitor(registry, new DeviceMonitor.Listener() {
+
+            @Override
+            public void onTransition(final JSONObject device, final boolean alive) {
+            }
+        }, DeviceMonitor.METHOD_SSDP, PluginUtils.UPNP_ROOT_DEVICE, 50, 100, 20);
+        monitor.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (registry.size() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        monitor.stop();
+        Harness.checkEquals(0, registry.size(), "device down for long expired from the registry");
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.cordova.usb.tethered.discovery;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.JSONObject;
+
+class DeviceRegistryTest implements Harness.Suite {
+
+    private static final String USN = "uuid:a::upnp:rootdevice";
+
+    @Override
+    public void run() throws Exception {
+        DeviceRegistry registry = new DeviceRegistry();
+        final List<String> added = new ArrayList<>();
+        registry.setListener(new DeviceRegistry.Listener() {
+
+            @Override
+            public void onNewDevice(final String usn) {
+                added.add(usn);
+            }
+        });
+
+        Harness.checkEquals(DeviceRegistry.Change.NEW, registry.update(device("192.168.42.10", 1, 1)), "first response");
+        Harness.checkEquals(DeviceRegistry.Change.UNCHANGED, registry.update(device("192.168.42.10", 1, 1)), "same BOOTID/CONFIGID");
+        Harness.checkEquals(DeviceRegistry.Change.CHANGED, registry.update(device("192.168.42.10", 2, 1)), "BOOTID changed");
+        Harness.checkEquals(DeviceRegistry.Change.CHANGED, registry.update(device("192.168.42.10", 2, 2)), "CONFIGID changed");
+        Harness.checkEquals(DeviceRegistry.Change.CHANGED, registry.update(device("192.168.42.11", 2, 2)), "moved");
+        Harness.checkEquals(1, added.size(), "listener told about the new USN only");
+
+        registry.update(new SSDPParser(Harness.response("uuid:b::upnp:rootdevice", "192.168.42.11", PluginUtils.SSDP_ALL, 1)));
+        Harness.checkEquals(1, registry.getAddresses().size(), "distinct addresses");
+
+        JSONObject snapshot = registry.getDevices().get(0);
+        registry.update(device("192.168.42.11", 2, 2));
+        Harness.check(!registry.remove(USN, snapshot), "device answered since the snapshot is kept");
+        Harness.check(registry.remove(USN, registry.getDevices().get(0)), "device removed");
+        Harness.checkEquals(1, registry.size(), "one device left");
+    }
+
+    private static SSDPParser device(final String ip, final int bootId, final int configId) throws Exception {
+        String response = Harness.response(USN, ip, PluginUtils.SSDP_ALL, bootId);
+        return new SSDPParser(response.replace("\r\n\r\n", "\r\nCONFIGID.UPNP.ORG: " + configId + "\r\n\r\n"));
+    }
+}
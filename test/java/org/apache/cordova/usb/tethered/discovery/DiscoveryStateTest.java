@@ -0,0 +1,89 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.cordova.usb.tethered.discovery;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+class DiscoveryStateTest implements Harness.Suite {
+
+    private static final String A = "uuid:a::upnp:rootdevice";
+
+    private static final String B = "uuid:b::upnp:rootdevice";
+
+    @Override
+    public void run() throws Exception {
+        DiscoveryState state = new DiscoveryState("e");
+        state.update(seen(device(A, 1), device(B, 1)));
+        String first = state.getToken();
+        JSONObject full = state.delta(null);
+        Harness.check(full.optBoolean("full"), "no token gets a full snapshot");
+        Harness.checkEquals(2, full.optJSONArray("added").length(), "full snapshot holds every device");
+        Harness.check(state.delta("other:1").optBoolean("full"), "foreign token gets a full snapshot");
+        checkDelta(state.delta(first), 0, 0, 0, "nothing happened since the current token");
+
+        for (int i = 1; i < DiscoveryState.MISS_THRESHOLD; i++) {
+            state.update(seen(device(A, 1)));
+        }
+        Harness.checkEquals(first, state.getToken(), "missing below the threshold is no change");
+        state.update(seen(device(A, 1)));
+        String removal = state.getToken();
+        JSONObject delta = state.delta(first);
+        checkDelta(delta, 0, 0, 1, "removed after the threshold");
+        Harness.checkEquals(B, delta.optJSONArray("removed").optString(0), "removed USN");
+
+        state.update(seen(device(A, 2), device(B, 1)));
+        checkDelta(state.delta(first), 0, 2, 0, "rebooted and re-added devices are changes for a client that still holds them");
+        checkDelta(state.delta(removal), 1, 1, 0, "re-added device is an addition for a client that saw the removal");
+
+        // B goes away for good, A keeps rebooting so every search is a new generation
+        for (int i = 0; i < DiscoveryState.MISS_THRESHOLD + DiscoveryState.TOMBSTONE_GENERATIONS; i++) {
+            state.update(seen(device(A, 10 + i)));
+        }
+        Harness.check(state.delta(first).optBoolean("full"), "tokens older than a forgotten removal get a full snapshot");
+    }
+
+    private static void checkDelta(final JSONObject delta, final int added, final int changed, final int removed, final String message) {
+        Harness.check(!delta.optBoolean("full"), message + ": not a full snapshot");
+        Harness.checkEquals(added, length(delta.optJSONArray("added")), message + ": added");
+        Harness.checkEquals(changed, length(delta.optJSONArray("changed")), message + ": changed");
+        Harness.checkEquals(removed, length(delta.optJSONArray("removed")), message + ": removed");
+    }
+
+    private static int length(final JSONArray array) {
+        return array == null ? -1 : array.length();
+    }
+
+    private static SSDPParser device(final String usn, final int bootId) throws Exception {
+        return new SSDPParser(Harness.response(usn, "192.168.42.10", PluginUtils.SSDP_ALL, bootId));
+    }
+
+    private static Map<String, SSDPParser> seen(final SSDPParser... devices) {
+        Map<String, SSDPParser> seen = new LinkedHashMap<>();
+        for (SSDPParser device : devices) {
+            seen.put(device.getUsn(), device);
+        }
+        return seen;
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.cordova.usb.tethered.discovery;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Plain JVM harness of the platform neutral core, no device, Cordova or
+ * test framework needed, only org.json on the classpath. See test/run.sh.
+ */
+public class Harness {
+
+    private static int failures = 0;
+
+    private static final List<String> suites = new ArrayList<>();
+
+    public static void main(final String[] args) throws Exception {
+        run("PacketQueue", new PacketQueueTest());
+        run("SSDPFilter", new SSDPFilterTest());
+        run("DiscoveryState", new DiscoveryStateTest());
+        run("Replay", new ReplayTest());
+        run("ResponseTimeHistogram", new ResponseTimeHistogramTest());
+        run("SearchWindowEstimator", new SearchWindowEstimatorTest());
+        run("DeviceRegistry", new DeviceRegistryTest());
+        run("OnlyChanged", new OnlyChangedTest());
+        run("SearchCoalescer", new SearchCoalescerTest());
+        run("NeighborTable", new NeighborTableTest());
+        run("DeviceMonitor", new DeviceMonitorTest());
+        System.out.println(suites.size() + " suites, " + failures + " failures");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * One suite, any exception counts as a failure
+     */
+    interface Suite {
+        void run() throws Exception;
+    }
+
+    private static void run(final String name, final Suite suite) {
+        suites.add(name);
+        int before = failures;
+        try {
+            suite.run();
+        } catch (Exception e) {
+            fail(name + " threw " + e);
+        }
+        System.out.println((failures == before ? "ok   " : "FAIL ") + name);
+    }
+
+    static void check(final boolean condition, final String message) {
+        if (!condition) {
+            fail(message);
+        }
+    }
+
+    static void checkEquals(final Object expected, final Object actual, final String message) {
+        if (expected == null ? actual != null : !expected.equals(actual)) {
+            fail(message + ": expected " + expected + " got " + actual);
+        }
+    }
+
+    private static void fail(final String message) {
+        failures++;
+        System.out.println("  " + message);
+    }
+
+    /**
+     * @return String SSDP response of a device
+     */
+    static String response(final String usn, final String ip, final String st, final int bootId) {
+        return "HTTP/1.1 200 OK\r\nCACHE-CONTROL: max-age=1800\r\nLOCATION: http://" + ip + ":80/desc.xml\r\nSERVER: Linux/3.0 UPnP/1.1 Test/1.0\r\nST: "
+                + st + "\r\nUSN: " + usn + "\r\nBOOTID.UPNP.ORG: " + bootId + "\r\n\r\n";
+    }
+
+    static SSDPPacket packet(final String payload, final String ip) throws Exception {
+        byte[] data = payload.getBytes(SSDPPacket.CHARSET);
+        return new SSDPPacket(data, data.length, InetAddress.getByName(ip), System.nanoTime());
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.cordova.usb.tethered.discovery;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.List;
+
+import org.json.JSONObject;
+
+class NeighborTableTest implements Harness.Suite {
+
+    private static final String FIXTURE = "IP address       HW type     Flags       HW address            Mask     Device\n"
+            + "192.168.42.129   0x1         0x2         aa:bb:cc:dd:ee:ff     *        rndis0\n"
+            // incomplete entry
+            + "192.168.42.130   0x1         0x0         00:00:00:00:00:00     *        rndis0\n"
+            // other interface
+            + "10.0.0.1         0x1         0x2         11:22:33:44:55:66     *        wlan0\n"
+            // permanent and resolved
+            + "192.168.42.131   0x1         0x6         aa:bb:cc:dd:ee:01     *        rndis0\n"
+            + "garbage\n";
+
+    @Override
+    public void run() throws Exception {
+        File table = File.createTempFile("arp", "");
+        FileWriter writer = new FileWriter(table);
+        try {
+            writer.write(FIXTURE);
+        } finally {
+            writer.close();
+        }
+        List<JSONObject> neighbors = NeighborTable.read(table, "rndis0");
+        Harness.checkEquals(2, neighbors.size(), "resolved neighbors of the interface");
+        Harness.checkEquals("192.168.42.129", neighbors.get(0).optString("ipAddress"), "ipAddress");
+        Harness.checkEquals("aa:bb:cc:dd:ee:ff", neighbors.get(0).optString("hwAddress"), "hwAddress");
+        Harness.checkEquals("192.168.42.131", neighbors.get(1).optString("ipAddress"), "flags are a bit mask");
+        Harness.checkEquals(0, NeighborTable.read(table, "usb0").size(), "no neighbors on other interfaces");
+        Harness.check(table.delete(), "fixture deleted");
+
+        try {
+            NeighborTable.read(table, "rndis0");
+            Harness.check(false, "missing table read");
+        } catch (IOException e) {
+            // expected, the engine reports NEIGHBOR_TABLE_UNAVAILABLE
+        }
+    }
+}
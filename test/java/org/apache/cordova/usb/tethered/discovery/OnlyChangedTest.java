@@ -0,0 +1,85 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.cordova.usb.tethered.discovery;
+
+import java.io.File;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * onlyChanged baselines are per search key, driven through replays
+ */
+class OnlyChangedTest implements Harness.Suite {
+
+    @Override
+    public void run() throws Exception {
+        File dir = File.createTempFile("ssdp", "");
+        Harness.check(dir.delete() && dir.mkdir(), "temp dir created");
+        File file = new File(dir, PluginUtils.CAPTURE_FILE);
+        DiscoveryEngine engine = ReplayTest.newEngine(dir);
+        JSONObject all = new JSONObject().put("onlyChanged", true);
+        JSONObject filtered = new JSONObject().put("onlyChanged", true).put("filter", new JSONObject().put("subnet", "192.168.42.0/24"));
+
+        capture(file, 1);
+        Harness.checkEquals(1, devices(engine, all), "new device reported");
+        Harness.checkEquals(0, devices(engine, all), "unchanged device not reported again");
+        Harness.checkEquals(1, devices(engine, filtered), "other search key has its own baseline");
+
+        capture(file, 2);
+        Harness.checkEquals(1, devices(engine, filtered), "reboot reported");
+        Harness.checkEquals(1, devices(engine, all), "reboot seen by another search key still reported");
+        Harness.checkEquals(0, devices(engine, all), "reboot reported once");
+
+        ReplayTest.CollectingSink sink = new ReplayTest.CollectingSink();
+        engine.revalidate(null, PluginUtils.UPNP_ROOT_DEVICE, 100, sink);
+        Harness.checkEquals(PluginUtils.NO_RESULTS, sink.results.get(0).optString("message"), "replays stay out of the live registry");
+
+        engine.shutdown();
+        file.delete();
+        dir.delete();
+    }
+
+    private static void capture(final File file, final int bootId) throws Exception {
+        file.delete();
+        PacketCapture capture = new PacketCapture(file);
+        long sentAt = System.nanoTime();
+        PacketCapture.Session session = capture.startSession(sentAt);
+        ReplayTest.write(session, Harness.response("uuid:a::upnp:rootdevice", "192.168.42.10", PluginUtils.SSDP_ALL, bootId), "192.168.42.10", sentAt + 1000000);
+        capture.append(session);
+    }
+
+    /**
+     * @return int devices reported by an onlyChanged replay, 0 for NO_CHANGES
+     */
+    private static int devices(final DiscoveryEngine engine, final JSONObject options) throws Exception {
+        ReplayTest.CollectingSink sink = new ReplayTest.CollectingSink();
+        engine.replay("", false, DiscoveryOptions.forReplay(new JSONArray().put("").put(false).put(options)), sink);
+        JSONObject result = sink.results.get(0);
+        Harness.check(result.optBoolean("status"), "replay succeeded: " + result.optString("message"));
+        JSONArray data = result.optJSONArray("data");
+        if (data == null) {
+            Harness.checkEquals(PluginUtils.NO_CHANGES, result.optString("message"), "nothing changed");
+            return 0;
+        }
+        return data.length();
+    }
+}
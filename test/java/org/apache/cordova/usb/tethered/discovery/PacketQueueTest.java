@@ -0,0 +1,85 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.cordova.usb.tethered.discovery;
+
+class PacketQueueTest implements Harness.Suite {
+
+    @Override
+    public void run() throws Exception {
+        dropOldest();
+        block();
+    }
+
+    /**
+     * A full queue keeps the newest packets and counts the dropped ones
+     */
+    private void dropOldest() throws Exception {
+        PacketQueue queue = new PacketQueue(4, PacketQueue.BackPressure.DROP_OLDEST);
+        for (int i = 0; i < 10; i++) {
+            Harness.check(queue.offer(Harness.packet("p" + i, "10.0.0.1")), "offer never fails when dropping");
+        }
+        queue.close();
+        int taken = 0;
+        SSDPPacket packet;
+        String last = null;
+        while ((packet = queue.take()) != null) {
+            taken++;
+            last = packet.getPayload();
+        }
+        Harness.checkEquals(10L, taken + queue.getDropped(), "taken + dropped");
+        Harness.check(taken <= 4, "at most capacity queued, got " + taken);
+        Harness.checkEquals("p9", last, "newest packet kept");
+    }
+
+    /**
+     * A blocking queue delivers everything, in order, to a slower consumer
+     */
+    private void block() throws Exception {
+        final int count = 5000;
+        final PacketQueue queue = new PacketQueue(8, PacketQueue.BackPressure.BLOCK);
+        Thread producer = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < count; i++) {
+                        queue.offer(Harness.packet(Integer.toString(i), "10.0.0.1"));
+                    }
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                } finally {
+                    queue.close();
+                }
+            }
+        });
+        producer.start();
+        int expected = 0;
+        boolean ordered = true;
+        SSDPPacket packet;
+        while ((packet = queue.take()) != null) {
+            ordered &= Integer.toString(expected++).equals(packet.getPayload());
+        }
+        producer.join();
+        Harness.checkEquals(count, expected, "every packet delivered");
+        Harness.check(ordered, "packets delivered in order");
+        Harness.checkEquals(0L, queue.getDropped(), "nothing dropped");
+    }
+}
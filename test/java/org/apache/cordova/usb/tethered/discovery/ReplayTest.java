@@ -0,0 +1,163 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.cordova.usb.tethered.discovery;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Capture file round trip through the whole engine pipeline
+ */
+class ReplayTest implements Harness.Suite {
+
+    @Override
+    public void run() throws Exception {
+        File dir = File.createTempFile("ssdp", "");
+        Harness.check(dir.delete() && dir.mkdir(), "temp dir created");
+        File file = new File(dir, PluginUtils.CAPTURE_FILE);
+
+        // two sessions, the second one with a non SSDP datagram
+        PacketCapture capture = new PacketCapture(file);
+        long sentAt = System.nanoTime();
+        PacketCapture.Session session = capture.startSession(sentAt);
+        write(session, Harness.response("uuid:a::upnp:rootdevice", "192.168.42.10", PluginUtils.SSDP_ALL, 1), "192.168.42.10", sentAt + 1000000);
+        capture.append(session);
+        sentAt = System.nanoTime();
+        session = capture.startSession(sentAt);
+        write(session, Harness.response("uuid:b::upnp:rootdevice", "10.0.0.11", PluginUtils.SSDP_ALL, 1), "10.0.0.11", sentAt + 2000000);
+        write(session, "garbage", "192.168.42.12", sentAt + 3000000);
+        capture.append(session);
+
+        DiscoveryEngine engine = newEngine(dir);
+
+        CollectingSink sink = new CollectingSink();
+        engine.replay("", false, DiscoveryOptions.forReplay(new JSONArray()), sink);
+        Harness.checkEquals(1, sink.results.size(), "one result");
+        JSONObject result = sink.results.get(0);
+        Harness.check(result.optBoolean("status"), "replay succeeded");
+        Harness.checkEquals(2, result.optJSONArray("data").length(), "both sessions replayed, garbage skipped");
+
+        sink = new CollectingSink();
+        JSONArray args = new JSONArray().put("").put(false).put(new JSONObject().put("filter", new JSONObject().put("subnet", "192.168.42.0/24")));
+        engine.replay(file.getPath(), false, DiscoveryOptions.forReplay(args), sink);
+        Harness.checkEquals(1, sink.results.get(0).optJSONArray("data").length(), "filter applied on replay");
+
+        sink = new CollectingSink();
+        engine.replay(new File(dir, "missing").getPath(), false, DiscoveryOptions.forReplay(new JSONArray()), sink);
+        Harness.check(!sink.results.get(0).optBoolean("status"), "missing capture is an error");
+
+        engine.shutdown();
+        file.delete();
+
+        overlapping(dir);
+        dir.delete();
+    }
+
+    /**
+     * Two searches capturing at the same time on the shared capture, every
+     * packet of both must replay
+     */
+    private static void overlapping(final File dir) throws Exception {
+        final int count = 50;
+        File file = new File(dir, PluginUtils.CAPTURE_FILE);
+        final PacketCapture capture = new PacketCapture(file);
+        final CountDownLatch started = new CountDownLatch(2);
+        Thread[] searches = new Thread[2];
+        for (int t = 0; t < searches.length; t++) {
+            final String prefix = "uuid:" + t + "-";
+            searches[t] = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        long sentAt = System.nanoTime();
+                        PacketCapture.Session session = capture.startSession(sentAt);
+                        started.countDown();
+                        started.await();
+                        for (int i = 0; i < count; i++) {
+                            write(session, Harness.response(prefix + i, "192.168.42.10", PluginUtils.SSDP_ALL, 1), "192.168.42.10", sentAt + i);
+                            Thread.yield();
+                        }
+                        capture.append(session);
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+            searches[t].start();
+        }
+        for (Thread search : searches) {
+            search.join();
+        }
+
+        DiscoveryEngine engine = newEngine(dir);
+        CollectingSink sink = new CollectingSink();
+        engine.replay("", false, DiscoveryOptions.forReplay(new JSONArray().put("").put(false).put(new JSONObject().put("queueCapacity", 4 * count))), sink);
+        JSONObject result = sink.results.get(0);
+        Harness.check(result.optBoolean("status"), "overlapping captures replay: " + result.optString("message"));
+        JSONArray data = result.optJSONArray("data");
+        Harness.checkEquals(2 * count, data == null ? 0 : data.length(), "every packet of overlapping captures replayed");
+        engine.shutdown();
+        file.delete();
+    }
+
+    static DiscoveryEngine newEngine(final File dir) {
+        return new DiscoveryEngine(new UsbState() {
+
+            @Override
+            public boolean isUsbAttached() {
+                return false;
+            }
+        }, new Executor() {
+
+            @Override
+            public void execute(final Runnable command) {
+                new Thread(command).start();
+            }
+        }, dir);
+    }
+
+    static void write(final PacketCapture.Session session, final String payload, final String ip, final long timestamp) throws Exception {
+        byte[] data = payload.getBytes(SSDPPacket.CHARSET);
+        session.write(data, data.length, InetAddress.getByName(ip), timestamp);
+    }
+
+    static class CollectingSink implements ResultSink {
+
+        final List<JSONObject> results = new ArrayList<>();
+
+        @Override
+        public void send(final boolean status, final JSONObject response) {
+            this.results.add(response);
+        }
+
+        @Override
+        public void close(final String message) {
+        }
+    }
+}
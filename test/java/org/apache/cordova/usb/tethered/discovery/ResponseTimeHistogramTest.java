@@ -0,0 +1,79 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.cordova.usb.tethered.discovery;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+class ResponseTimeHistogramTest implements Harness.Suite {
+
+    @Override
+    public void run() throws Exception {
+        ResponseTimeHistogram histogram = new ResponseTimeHistogram();
+        Harness.checkEquals(-1L, histogram.getPercentile(50), "empty histogram");
+
+        // 0, 10, ... 990 MSEC
+        for (int i = 0; i < 100; i++) {
+            histogram.record(i * 10);
+        }
+        histogram.searchDone();
+        Harness.checkEquals(500L, histogram.getPercentile(50), "median bucket upper bound");
+        Harness.checkEquals(1000L, histogram.getPercentile(100), "slowest bucket upper bound");
+        Harness.checkEquals(25L, histogram.getPercentile(0), "percentile clamped to the first sample");
+
+        ResponseTimeHistogram copy = roundTrip(histogram);
+        Harness.checkEquals(histogram.getTotal(), copy.getTotal(), "total read back");
+        Harness.checkEquals(histogram.getSearches(), copy.getSearches(), "searches read back");
+        Harness.checkEquals(histogram.getPercentile(90), copy.getPercentile(90), "percentile read back");
+
+        histogram.record(ResponseTimeHistogram.BUCKETS * ResponseTimeHistogram.BUCKET_MSEC + 1);
+        Harness.checkEquals(-1L, histogram.getPercentile(100), "overflow bucket has no bound");
+
+        ResponseTimeHistogram decaying = new ResponseTimeHistogram();
+        for (long i = 0; i <= ResponseTimeHistogram.MAX_SAMPLES; i++) {
+            decaying.record(100);
+        }
+        Harness.checkEquals(ResponseTimeHistogram.MAX_SAMPLES / 2, decaying.getTotal(), "halved past MAX_SAMPLES");
+        Harness.checkEquals(125L, decaying.getPercentile(99), "decay keeps the distribution");
+
+        ByteArrayOutputStream corrupted = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(corrupted);
+        out.writeInt(1);
+        out.writeInt(1);
+        out.writeShort(ResponseTimeHistogram.BUCKETS + 1);
+        out.writeLong(1);
+        try {
+            ResponseTimeHistogram.read(new DataInputStream(new ByteArrayInputStream(corrupted.toByteArray())));
+            Harness.check(false, "corrupted histogram read");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    private static ResponseTimeHistogram roundTrip(final ResponseTimeHistogram histogram) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        histogram.write(new DataOutputStream(buffer));
+        return ResponseTimeHistogram.read(new DataInputStream(new ByteArrayInputStream(buffer.toByteArray())));
+    }
+}
@@ -0,0 +1,68 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.cordova.usb.tethered.discovery;
+
+import java.net.InetAddress;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+class SSDPFilterTest implements Harness.Suite {
+
+    @Override
+    public void run() throws Exception {
+        SSDPFilter filter = SSDPFilter.fromJSON(new JSONObject().put("stPrefix", "urn:schemas-upnp-org:device:MediaRenderer")
+                .put("serverRegex", "Test/\\d").put("subnet", "192.168.42.0/24"));
+        String renderer = Harness.response("uuid:a::upnp:rootdevice", "192.168.42.10", "urn:schemas-upnp-org:device:MediaRenderer:1", 1);
+        String server = Harness.response("uuid:b::upnp:rootdevice", "192.168.42.11", "urn:schemas-upnp-org:device:MediaServer:1", 1);
+
+        Harness.check(accepts(filter, renderer, "192.168.42.10"), "matching response accepted");
+        Harness.check(!accepts(filter, server, "192.168.42.11"), "other ST rejected");
+        Harness.check(!accepts(filter, renderer, "10.0.0.10"), "other subnet rejected");
+        Harness.check(accepts(filter, renderer.replace("ST: ", "st:   "), "192.168.42.10"), "header names are case insensitive");
+        Harness.check(!accepts(filter, renderer.replace("Test/1.0", "Other/1.0"), "192.168.42.10"), "SERVER regex applied");
+
+        Harness.checkEquals(filter.getKey(), SSDPFilter.fromJSON(new JSONObject().put("subnet", "192.168.42.0/24")
+                .put("serverRegex", "Test/\\d").put("stPrefix", "urn:schemas-upnp-org:device:MediaRenderer")).getKey(),
+                "key does not depend on the option order");
+
+        invalid(new JSONObject().put("stRegex", "("), "bad regex");
+        invalid(new JSONObject().put("subnet", "192.168.42.0/33"), "bad prefix length");
+        invalid(new JSONObject().put("subnet", "/24"), "blank subnet address");
+        invalid(new JSONObject().put("subnet", "localhost/24"), "host name subnet");
+        invalid(new JSONObject().put("subnet", "192.168.42.0/24/8"), "more than one slash");
+        invalid(new JSONObject().put("subnet", "192.168.42.0/"), "blank prefix length");
+    }
+
+    private static boolean accepts(final SSDPFilter filter, final String payload, final String ip) throws Exception {
+        byte[] data = payload.getBytes(SSDPPacket.CHARSET);
+        return filter.accepts(data, data.length, InetAddress.getByName(ip));
+    }
+
+    private static void invalid(final JSONObject json, final String message) {
+        try {
+            SSDPFilter.fromJSON(json);
+            Harness.check(false, message + " accepted");
+        } catch (JSONException e) {
+            // expected
+        }
+    }
+}
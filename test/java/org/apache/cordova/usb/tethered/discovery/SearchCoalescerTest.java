@@ -0,0 +1,66 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.cordova.usb.tethered.discovery;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+class SearchCoalescerTest implements Harness.Suite {
+
+    @Override
+    public void run() throws Exception {
+        SearchCoalescer coalescer = new SearchCoalescer();
+        ReplayTest.CollectingSink first = new ReplayTest.CollectingSink();
+        ReplayTest.CollectingSink second = new ReplayTest.CollectingSink();
+        ReplayTest.CollectingSink third = new ReplayTest.CollectingSink();
+        ReplayTest.CollectingSink other = new ReplayTest.CollectingSink();
+
+        ResultSink shared = coalescer.join("k", first);
+        Harness.check(shared != null, "first caller runs the search");
+        Harness.check(coalescer.join("k", second) == null, "identical search attached");
+        Harness.check(coalescer.join("k", third) == null, "identical search attached");
+        ResultSink otherShared = coalescer.join("other", other);
+        Harness.check(otherShared != null, "other key runs its own search");
+
+        JSONObject result = new JSONObject().put("status", true);
+        shared.send(true, result);
+        Harness.checkEquals(1, first.results.size(), "runner got the result");
+        Harness.checkEquals(1, second.results.size(), "attached caller got the result");
+        Harness.checkEquals(1, third.results.size(), "attached caller got the result");
+        Harness.check(second.results.get(0) == result, "same result for every caller");
+        Harness.checkEquals(0, other.results.size(), "other search still in flight");
+
+        shared.send(false, new JSONObject());
+        Harness.checkEquals(1, first.results.size(), "one result per caller");
+        Harness.check(coalescer.join("k", new ReplayTest.CollectingSink()) != null, "finished search is not joined anymore");
+
+        JSONObject extended = new JSONObject().put("filter", new JSONObject().put("stPrefix", "urn:"));
+        String key = options(extended).getKey();
+        Harness.checkEquals(key, options(new JSONObject().put("filter", new JSONObject().put("stPrefix", "urn:"))).getKey(), "identical options, same key");
+        Harness.check(!key.equals(options(extended.put("adaptive", true)).getKey()), "adaptive window has its own key");
+        Harness.check(!key.equals(options(new JSONObject().put("filter", new JSONObject().put("stPrefix", "urn:")).put("capture", true)).getKey()),
+                "capture has its own key");
+    }
+
+    private static DiscoveryOptions options(final JSONObject extended) throws Exception {
+        return DiscoveryOptions.fromArgs(new JSONArray().put("ssdp:all").put("1.1").put(3).put(extended));
+    }
+}
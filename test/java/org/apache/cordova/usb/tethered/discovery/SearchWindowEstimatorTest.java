@@ -0,0 +1,69 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.cordova.usb.tethered.discovery;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+class SearchWindowEstimatorTest implements Harness.Suite {
+
+    private static final String NET_IF = "rndis0";
+
+    @Override
+    public void run() throws Exception {
+        File file = File.createTempFile("timing", "");
+        Harness.check(file.delete(), "no histogram file yet");
+        SearchWindowEstimator estimator = new SearchWindowEstimator(file);
+        Harness.checkEquals(-1L, estimator.getWindow(NET_IF, 3, 99, 200), "no data, fixed window");
+
+        estimator.record(NET_IF, latencies(100, (int) SearchWindowEstimator.MIN_SAMPLES - 1), (int) SearchWindowEstimator.MIN_SAMPLES - 1);
+        Harness.checkEquals(-1L, estimator.getWindow(NET_IF, 3, 99, 200), "below MIN_SAMPLES, fixed window");
+
+        estimator.record(NET_IF, latencies(100, 1), 1);
+        Harness.checkEquals(325L, estimator.getWindow(NET_IF, 3, 99, 200), "percentile bucket plus margin");
+        Harness.checkEquals(-1L, estimator.getWindow("wlan0", 3, 99, 200), "histograms are per interface");
+
+        estimator.record(NET_IF, latencies(4000, 20), 20);
+        Harness.checkEquals(1000L, estimator.getWindow(NET_IF, 1, 99, 200), "window capped at mx");
+
+        Harness.checkEquals(1000L, new SearchWindowEstimator(file).getWindow(NET_IF, 1, 99, 200), "histograms persisted");
+
+        for (int i = 3; i < SearchWindowEstimator.FULL_SEARCH_INTERVAL; i++) {
+            estimator.record(NET_IF, latencies(100, 1), 1);
+        }
+        Harness.checkEquals(-1L, estimator.getWindow(NET_IF, 3, 99, 200), "every FULL_SEARCH_INTERVAL search runs the fixed window");
+        estimator.record(NET_IF, latencies(100, 1), 1);
+        Harness.check(estimator.getWindow(NET_IF, 3, 99, 200) > 0, "adaptive again after the full search");
+
+        JSONArray args = new JSONArray().put("ssdp:all").put("1.1").put(3).put(new JSONObject().put("adaptive", true).put("adaptiveMargin", -500));
+        Harness.checkEquals(0L, DiscoveryOptions.fromArgs(args).getAdaptiveMargin(), "negative margin clamped");
+        Harness.check(file.delete(), "histogram file deleted");
+    }
+
+    private static long[] latencies(final long latency, final int count) {
+        long[] latencies = new long[count];
+        Arrays.fill(latencies, latency);
+        return latencies;
+    }
+}
@@ -0,0 +1,21 @@
+#!/bin/sh
+#
+# Runs the JVM harness of the platform neutral discovery core, no device
+# or Cordova needed. The Android and Cordova adapters are left out.
+#
+# usage: ORG_JSON_JAR=/path/to/json.jar test/run.sh
+#
+set -e
+
+cd "$(dirname "$0")/.."
+if [ -z "$ORG_JSON_JAR" ]; then
+    echo "ORG_JSON_JAR must point to an org.json jar" >&2
+    exit 2
+fi
+
+OUT=$(mktemp -d)
+trap 'rm -rf "$OUT"' EXIT
+
+CORE=$(grep -L -e '^import android\.' -e '^import org\.apache\.cordova\.[A-Z]' -e 'android\.util\.Log\.' src/android/*.java)
+javac -source 1.7 -target 1.7 -nowarn -cp "$ORG_JSON_JAR" -d "$OUT" $CORE test/java/org/apache/cordova/usb/tethered/discovery/*.java
+java -ea -cp "$OUT:$ORG_JSON_JAR" org.apache.cordova.usb.tethered.discovery.Harness
@@ -52,6 +52,92 @@ var cordova = require('cordova'),
  * {'searchTarget': 'ssdp:all',
  *	'upnpVersion': 1.0, (or 1.1)
  *	'maxWaitTime': 10} (between 5 and 100, depending on the upnp version)
+ * Concurrent calls with the same searchTarget, upnpVersion, maxWaitTime and
+ * filter share one network search and all get its result (Android).
+ * Optional receive pipeline tuning (Android):
+ * {'receiveBufferSize': 262144, (SO_RCVBUF in bytes, 0 for system default)
+ *	'queueCapacity': 128, (responses buffered between receiving and parsing)
+ *	'backPressure': 'block'} ('block' or 'dropOldest' when the queue is full)
+ * Optional response filter (Android), checked on the raw response before
+ * parsing, all given criteria must match:
+ * {'filter': {'stPrefix': 'urn:schemas-upnp-org:device:',
+ *	'usnPrefix': 'uuid:', 'usnRegex': '...',
+ *	'serverPrefix': 'Linux', 'serverRegex': 'Embedded.*Server',
+ *	'stRegex': '...', 'subnet': '192.168.42.0/24'}}
+ * Optional adaptive search window (Android), response latencies are learned
+ * per interface and the search ends at the percentile plus margin, never
+ * after maxWaitTime:
+ * {'adaptive': true,
+ *	'adaptivePercentile': 99,
+ *	'adaptiveMargin': 200} (MSEC)
+ * Optional change detection (Android), responses carry bootId, configId and
+ * maxAge. With onlyChanged only devices never seen, rebooted (BOOTID),
+ * reconfigured (CONFIGID) or moved (LOCATION) since the previous discovery
+ * with the same searchTarget, version, mx and filter
+ * are returned, NO_CHANGES is the success message when none changed:
+ * {'onlyChanged': true}
+ * Optional delta results (Android), success holds only what happened since
+ * the generation token of a previous delta, or everything ('full': true)
+ * for a missing/unknown token:
+ * {'delta': true, 'generation': lastResult.generation}
+ * -> {'generation': '...', 'full': false, 'added': [...], 'changed': [...],
+ *	'removed': [usn, ...], 'message': 'NO_CHANGES' when nothing happened}
+ * A device is removed after 3 searches in a row without its response.
+ * Optional raw capture (Android), every received datagram is appended to
+ * ssdp-capture.bin on the app files dir, see replay. Past 1MB the file is
+ * moved to ssdp-capture.bin.1 on the next captured search:
+ * {'capture': true}
+ *
+ * @example
+ * navigator.usbdiscovery.replay(successCallback, errorCallback, replayOptions);
+ * Feeds a capture back through the discovery pipeline, results are reported
+ * as a discovery would. Replayed devices are kept apart from the live ones,
+ * they never show up on revalidate or the monitor.
+ * replayOptions is an optional Object:
+ * {'file': '/path/to/ssdp-capture.bin', (defaults to the app capture file)
+ *	'realtime': false, (true to respect the recorded timing)
+ *	'filter': {...}} (same pipeline options as discovery)
+ *
+ * @example
+ * navigator.usbdiscovery.revalidate(successCallback, errorCallback, revalidateOptions);
+ * Sends unicast M-SEARCHes (UPnP 1.1) to already known devices, success data
+ * holds every answer and missing the addresses which did not answer. It
+ * returns as soon as every address answered, only with an explicit ssdp:all
+ * the answers are collected for the whole timeout, a device may answer once
+ * per service. Addresses must be IPV4 literals, otherwise errorCallback gets
+ * INVALID_ADDRESS.
+ * revalidateOptions is an optional Object:
+ * {'addresses': ['192.168.42.129'], (defaults to every device discovered so far)
+ *	'searchTarget': 'upnp:rootdevice',
+ *	'timeout': 500} (MSEC to wait for the answers)
+ *
+ * @example
+ * navigator.usbdiscovery.neighbors(successCallback, errorCallback, neighborOptions);
+ * Lists the hosts from the kernel neighbor (ARP) cache of the tether
+ * interface, [{'ipAddress': ..., 'hwAddress': ...}], within milliseconds.
+ * With probe the hosts are revalidated right away (see revalidate), which
+ * also works where multicast is filtered. Android 10+ may deny access to the
+ * neighbor cache, errorCallback gets NEIGHBOR_TABLE_UNAVAILABLE then.
+ * neighborOptions is an optional Object:
+ * {'probe': false,
+ *	'searchTarget': 'upnp:rootdevice',
+ *	'timeout': 500} (MSEC to wait for the probe answers)
+ *
+ * @example
+ * navigator.usbdiscovery.startMonitor(eventCallback, errorCallback, monitorOptions);
+ * navigator.usbdiscovery.stopMonitor(successCallback, errorCallback);
+ * Keeps probing the discovered devices, eventCallback is called once with
+ * MONITOR_STARTED and then only when a device goes DEVICE_UP or DEVICE_DOWN
+ * (device in data), and a last time with MONITOR_STOPPED once stopped.
+ * Stable devices are probed less and less often, HTTP probes run in
+ * parallel. Newly discovered devices are probed right away, devices down
+ * for 4 maxInterval periods are forgotten.
+ * monitorOptions is an optional Object:
+ * {'method': 'ssdp', ('ssdp' unicast M-SEARCH or 'http' HEAD on LOCATION)
+ *	'searchTarget': 'ssdp:all',
+ *	'minInterval': 2000, (MSEC between probes after a change)
+ *	'maxInterval': 30000, (MSEC between probes of a stable device)
+ *	'timeout': 500} (MSEC to wait for a probe answer)
  */
 
 module.exports = {
@@ -73,13 +159,81 @@ module.exports = {
     var st = argscheck.getValue(discoveryOptions.searchTarget, 'ssdp:all');
     var ver = argscheck.getValue(discoveryOptions.upnpVersion, 1.1);
     var mx = argscheck.getValue(discoveryOptions.maxWaitTime, 5);
+    var extended = {
+      'receiveBufferSize': argscheck.getValue(discoveryOptions.receiveBufferSize, 0),
+      'queueCapacity': argscheck.getValue(discoveryOptions.queueCapacity, 128),
+      'backPressure': argscheck.getValue(discoveryOptions.backPressure, 'block'),
+      'filter': argscheck.getValue(discoveryOptions.filter, {}),
+      'adaptive': argscheck.getValue(discoveryOptions.adaptive, false),
+      'adaptivePercentile': argscheck.getValue(discoveryOptions.adaptivePercentile, 99),
+      'adaptiveMargin': argscheck.getValue(discoveryOptions.adaptiveMargin, 200),
+      'capture': argscheck.getValue(discoveryOptions.capture, false),
+      'onlyChanged': argscheck.getValue(discoveryOptions.onlyChanged, false),
+      'delta': argscheck.getValue(discoveryOptions.delta, false),
+      'generation': argscheck.getValue(discoveryOptions.generation, '')
+    };
 
-    discoveryOptions = [st, ver, mx];
+    discoveryOptions = [st, ver, mx, extended];
 
     return cordova.exec(successCallback, errorCallback, 'UsbDiscovery', 'discovery',
     discoveryOptions);
   },
 
+  replay: function(successCallback, errorCallback, replayOptions) {
+    replayOptions = replayOptions || {};
+
+    var file = argscheck.getValue(replayOptions.file, '');
+    var realtime = argscheck.getValue(replayOptions.realtime, false);
+    var extended = {
+      'queueCapacity': argscheck.getValue(replayOptions.queueCapacity, 128),
+      'backPressure': argscheck.getValue(replayOptions.backPressure, 'block'),
+      'filter': argscheck.getValue(replayOptions.filter, {})
+    };
+
+    return cordova.exec(successCallback, errorCallback, 'UsbDiscovery', 'replay',
+    [file, realtime, extended]);
+  },
+
+  revalidate: function(successCallback, errorCallback, revalidateOptions) {
+    revalidateOptions = revalidateOptions || {};
+
+    var addresses = argscheck.getValue(revalidateOptions.addresses, []);
+    var st = argscheck.getValue(revalidateOptions.searchTarget, 'upnp:rootdevice');
+    var timeout = argscheck.getValue(revalidateOptions.timeout, 500);
+
+    return cordova.exec(successCallback, errorCallback, 'UsbDiscovery', 'revalidate',
+    [addresses, st, timeout]);
+  },
+
+  neighbors: function(successCallback, errorCallback, neighborOptions) {
+    neighborOptions = neighborOptions || {};
+
+    var probe = argscheck.getValue(neighborOptions.probe, false);
+    var st = argscheck.getValue(neighborOptions.searchTarget, 'upnp:rootdevice');
+    var timeout = argscheck.getValue(neighborOptions.timeout, 500);
+
+    return cordova.exec(successCallback, errorCallback, 'UsbDiscovery', 'neighbors',
+    [probe, st, timeout]);
+  },
+
+  startMonitor: function(eventCallback, errorCallback, monitorOptions) {
+    monitorOptions = monitorOptions || {};
+
+    var options = {
+      'method': argscheck.getValue(monitorOptions.method, 'ssdp'),
+      'searchTarget': argscheck.getValue(monitorOptions.searchTarget, 'ssdp:all'),
+      'minInterval': argscheck.getValue(monitorOptions.minInterval, 2000),
+      'maxInterval': argscheck.getValue(monitorOptions.maxInterval, 30000),
+      'timeout': argscheck.getValue(monitorOptions.timeout, 500)
+    };
+
+    return cordova.exec(eventCallback, errorCallback, 'UsbDiscovery', 'startMonitor', [options]);
+  },
+
+  stopMonitor: function(successCallback, errorCallback) {
+    return cordova.exec(successCallback, errorCallback, 'UsbDiscovery', 'stopMonitor', []);
+  },
+
   isDeviceReady: function(successCallback, errorCallback) {
     return cordova.exec(successCallback, errorCallback, 'UsbDiscovery', 'isDeviceReady', []);
   },